@@ -0,0 +1,74 @@
+package io.emmet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Checksums of engine inputs (core scripts, snippets, user data and
+ * extensions), used to validate data cached between sessions
+ * @author sergey
+ *
+ */
+public class Checksum {
+	private Checksum() {
+
+	}
+
+	/**
+	 * Returns checksum of given string
+	 */
+	public static String hash(String str) {
+		CRC32 crc = new CRC32();
+		try {
+			crc.update(str.getBytes("UTF-8"));
+		} catch (IOException e) {
+			crc.update(str.getBytes());
+		}
+		return Long.toHexString(crc.getValue()) + "/" + str.length();
+	}
+	
+	/**
+	 * Returns checksum of given data
+	 */
+	public static String hash(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return Long.toHexString(crc.getValue()) + "/" + data.length;
+	}
+	
+	/**
+	 * Returns checksum of file contents
+	 */
+	public static String hash(File file) {
+		try {
+			return hash(new FileInputStream(file));
+		} catch (IOException e) {
+			return file.length() + ":" + file.lastModified();
+		}
+	}
+	
+	/**
+	 * Returns checksum of stream contents. Stream is closed afterwards
+	 */
+	public static String hash(InputStream stream) throws IOException {
+		CRC32 crc = new CRC32();
+		long size = 0;
+		try {
+			byte[] buf = new byte[16384];
+			int len;
+			while ((len = stream.read(buf)) != -1) {
+				crc.update(buf, 0, len);
+				size += len;
+			}
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) { }
+		}
+		
+		return Long.toHexString(crc.getValue()) + "/" + size;
+	}
+}
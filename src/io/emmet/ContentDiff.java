@@ -0,0 +1,205 @@
+package io.emmet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds regions of text changed by editor action, so only these regions
+ * are replaced in document instead of whole content passed to
+ * <code>replaceContent()</code>. Common prefix and suffix of old and new
+ * text are skipped first; if changed part spans several lines, it's
+ * compared line by line (Myers diff limited to <code>maxEdits</code>
+ * line insertions and deletions) to split it into a few smaller regions
+ * @author sergey
+ *
+ */
+public class ContentDiff {
+	/**
+	 * Maximum number of inserted and removed lines for line-level diff.
+	 * If texts differ more, changed part is replaced as a single region
+	 */
+	public static final int MAX_EDITS = 200;
+
+	/**
+	 * Returns changed regions of text. Each region is an array of
+	 * <code>[oldStart, oldEnd, newStart, newEnd]</code> offsets; regions
+	 * are ordered by offset and don't overlap
+	 * @param oldText Current text
+	 * @param newText Replacement text
+	 * @return Changed regions, empty list if texts are equal
+	 */
+	public static List<int[]> diff(CharSequence oldText, CharSequence newText) {
+		return diff(oldText, newText, MAX_EDITS);
+	}
+
+	public static List<int[]> diff(CharSequence oldText, CharSequence newText, int maxEdits) {
+		ArrayList<int[]> regions = new ArrayList<int[]>();
+		int oldLen = oldText.length(), newLen = newText.length();
+		int minLen = Math.min(oldLen, newLen);
+
+		int prefix = 0;
+		while (prefix < minLen && oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix++;
+		}
+
+		int suffix = 0;
+		while (suffix < minLen - prefix
+				&& oldText.charAt(oldLen - suffix - 1) == newText.charAt(newLen - suffix - 1)) {
+			suffix++;
+		}
+
+		int oldEnd = oldLen - suffix, newEnd = newLen - suffix;
+		if (prefix == oldEnd && prefix == newEnd)
+			return regions;
+
+		int[] oldLines = splitLines(oldText, prefix, oldEnd);
+		int[] newLines = splitLines(newText, prefix, newEnd);
+		if (oldLines.length > 2 && newLines.length > 2
+				&& diffLines(oldText, oldLines, newText, newLines, maxEdits, regions)) {
+			return regions;
+		}
+
+		regions.clear();
+		regions.add(new int[]{prefix, oldEnd, prefix, newEnd});
+		return regions;
+	}
+
+	/**
+	 * Returns offsets of lines in given range of text, including range end
+	 */
+	private static int[] splitLines(CharSequence text, int start, int end) {
+		int[] lines = new int[16];
+		int count = 0;
+		lines[count++] = start;
+
+		for (int i = start; i < end; i++) {
+			char ch = text.charAt(i);
+			if (ch == '\n' || (ch == '\r' && (i + 1 >= end || text.charAt(i + 1) != '\n'))) {
+				if (count + 1 >= lines.length) {
+					int[] newLines = new int[lines.length * 2];
+					System.arraycopy(lines, 0, newLines, 0, count);
+					lines = newLines;
+				}
+				lines[count++] = i + 1;
+			}
+		}
+
+		if (lines[count - 1] != end) {
+			lines[count++] = end;
+		}
+
+		int[] result = new int[count];
+		System.arraycopy(lines, 0, result, 0, count);
+		return result;
+	}
+
+	private static int[] hashLines(CharSequence text, int[] lines) {
+		int[] hashes = new int[lines.length - 1];
+		for (int i = 0; i < hashes.length; i++) {
+			int h = 0;
+			for (int j = lines[i]; j < lines[i + 1]; j++) {
+				h = 31 * h + text.charAt(j);
+			}
+			hashes[i] = h;
+		}
+		return hashes;
+	}
+
+	private static boolean lineEquals(CharSequence a, int[] aLines, int[] aHashes, int i,
+			CharSequence b, int[] bLines, int[] bHashes, int j) {
+		if (aHashes[i] != bHashes[j])
+			return false;
+
+		int aStart = aLines[i], len = aLines[i + 1] - aStart, bStart = bLines[j];
+		if (len != bLines[j + 1] - bStart)
+			return false;
+
+		for (int k = 0; k < len; k++) {
+			if (a.charAt(aStart + k) != b.charAt(bStart + k))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Compares lines of texts and adds regions between matched lines
+	 * @return <code>false</code> if texts have more than
+	 * <code>maxEdits</code> different lines
+	 */
+	private static boolean diffLines(CharSequence a, int[] aLines, CharSequence b, int[] bLines,
+			int maxEdits, List<int[]> regions) {
+		int[] aHashes = hashLines(a, aLines);
+		int[] bHashes = hashLines(b, bLines);
+		int n = aHashes.length, m = bHashes.length;
+		int max = Math.min(n + m, maxEdits);
+		int offset = max + 1;
+		int[] v = new int[2 * max + 3];
+		ArrayList<int[]> trace = new ArrayList<int[]>();
+
+		for (int d = 0; d <= max; d++) {
+			trace.add(v.clone());
+			for (int k = -d; k <= d; k += 2) {
+				int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+						? v[offset + k + 1] : v[offset + k - 1] + 1;
+				int y = x - k;
+				while (x < n && y < m && lineEquals(a, aLines, aHashes, x, b, bLines, bHashes, y)) {
+					x++;
+					y++;
+				}
+				v[offset + k] = x;
+
+				if (x >= n && y >= m) {
+					addRegions(trace, offset, n, m, aLines, bLines, regions);
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Walks back through Myers diff trace and adds regions between
+	 * matched lines, in document order
+	 */
+	private static void addRegions(List<int[]> trace, int offset, int n, int m,
+			int[] aLines, int[] bLines, List<int[]> regions) {
+		// matched line pairs, from last to first
+		ArrayList<int[]> matches = new ArrayList<int[]>();
+		int x = n, y = m;
+
+		for (int d = trace.size() - 1; d >= 0; d--) {
+			int[] v = trace.get(d);
+			int k = x - y;
+			int startX = 0, startY = 0;
+			if (d > 0) {
+				boolean down = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]);
+				int prevX = down ? v[offset + k + 1] : v[offset + k - 1];
+				int prevK = down ? k + 1 : k - 1;
+				startX = down ? prevX : prevX + 1;
+				startY = startX - k;
+				while (x > startX && y > startY) {
+					matches.add(new int[]{--x, --y});
+				}
+				x = prevX;
+				y = prevX - prevK;
+			} else {
+				while (x > startX && y > startY) {
+					matches.add(new int[]{--x, --y});
+				}
+			}
+		}
+
+		int lastA = 0, lastB = 0;
+		for (int i = matches.size() - 1; i >= -1; i--) {
+			int matchA = i >= 0 ? matches.get(i)[0] : n;
+			int matchB = i >= 0 ? matches.get(i)[1] : m;
+			if (matchA > lastA || matchB > lastB) {
+				regions.add(new int[]{aLines[lastA], aLines[matchA], bLines[lastB], bLines[matchB]});
+			}
+			lastA = matchA + 1;
+			lastB = matchB + 1;
+		}
+	}
+}
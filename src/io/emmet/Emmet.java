@@ -1,19 +1,74 @@
 package io.emmet;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
 
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 public class Emmet {
 	private volatile static Emmet singleton;
-	private static Context cx;
-	private static Scriptable scope;
+	
+	/**
+	 * Sealed scope with standard JS objects, shared by all engine instances
+	 */
+	private static ScriptableObject sharedScope;
+	
+	/**
+	 * Incremented on each <code>reset()</code>: engines created before 
+	 * reset are considered stale and should not be used anymore
+	 */
+	private static volatile int currentGeneration = 0;
+	
+	/**
+	 * Incremented on each <code>updateUserData()</code> call. Engines that
+	 * missed an update are considered stale as well
+	 */
+	private static volatile int userDataVersion = 0;
+	
+	private Scriptable scope;
+	private int generation;
+	private int dataVersion;
+	
+	/**
+	 * Time, in milliseconds, spent on engine initialization
+	 */
+	private long initTime;
+	private ExpansionCache expansionCache;
 	private static String snippetsJSON = "snippets.json";
 	private static IUserData userDataDelegate = null;
 	
+	/**
+	 * Package of core scripts precompiled to JVM bytecode at build time
+	 * (see <code>customBuildCallbacks.xml</code>)
+	 */
+	private static String compiledPackage = "io.emmet.compiled";
+	private static String compiledModulesPackage = "io.emmet.compiled.modules";
+	private static boolean usePrecompiledScripts = true;
+	private static int optimizationLevel = Integer.getInteger("emmet.optimizationLevel", 9);
+	private static int expansionCacheSize = Integer.getInteger("emmet.expansionCacheSize", 500);
+	
+	/**
+	 * File where expansion results are stored between sessions. Persistent
+	 * cache is disabled if not set
+	 */
+	private static File expansionCacheFile = null;
+	private static int expansionStoreSize = Integer.getInteger("emmet.expansionStoreSize", 2000);
+	private static ExpansionStore expansionStore = null;
+	
+	/**
+	 * Resolved JS functions, keyed by name passed to 
+	 * <code>execJSFunction()</code>
+	 */
+	private HashMap<String, JSFunction> functions = new HashMap<String, JSFunction>();
 	
 	private static String[] coreFiles = {
 		"emmet-app.js",
@@ -22,25 +77,99 @@ public class Emmet {
 		"java-wrapper.js"
 	}; 
 	
-	private Emmet() {
-		cx = Context.enter();
-		scope = cx.initStandardObjects();
+	/**
+	 * Core modules that are not evaluated on engine initialization but 
+	 * loaded on first <code>require()</code> call from <code>modules</code>
+	 * folder. Such modules must not have side effects on definition (like
+	 * registering actions or filters)
+	 */
+	private static String[] lazyModules = {
+		"base64",
+		"cssParser",
+		"xmlParser",
+		"editTree",
+		"cssEditTree",
+		"xmlEditTree"
+	};
+	
+	/**
+	 * Creates new engine instance. Most clients should use 
+	 * <code>getSingleton()</code>; additional engines for background 
+	 * threads are available via {@link EmmetPool}
+	 */
+	Emmet() {
+		long startTime = System.currentTimeMillis();
+		generation = currentGeneration;
+		dataVersion = userDataVersion;
+		Context cx = enterContext();
 		try {
+			scope = createScope(cx);
+			
 			// load core
 			for (int i = 0; i < coreFiles.length; i++) {
-				cx.evaluateReader(scope, getReaderForLocalFile(coreFiles[i]), coreFiles[i], 1, null);
+				Script script = getPrecompiledScript(compiledPackage, coreFiles[i]);
+				if (script != null) {
+					script.exec(cx, scope);
+				} else {
+					cx.evaluateReader(scope, getReaderForLocalFile(coreFiles[i]), coreFiles[i], 1, null);
+				}
 			}
 			
 			// load default snippets
-			execJSFunction("javaLoadSystemSnippets", readLocalFile(snippetsJSON));
+			String systemSnippets = readLocalFile(snippetsJSON);
+			execJSFunction("javaLoadSystemSnippets", 
+					JSMarshaller.parseJSON(cx, scope, new StringReader(systemSnippets)));
 			
 			if (userDataDelegate != null) {
 				userDataDelegate.load(this);
 				userDataDelegate.loadExtensions(this);
 			}
+			
+			expansionCache = new ExpansionCache(expansionCacheSize);
+			if (expansionCacheFile != null) {
+				expansionCache.setStore(getExpansionStore(getDataKey(systemSnippets)));
+			}
+			ScriptableObject.putProperty(scope, "javaExpansionCache", Context.javaToJS(expansionCache, scope));
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
+		} finally {
+			Context.exit();
 		}
+		
+		initTime = System.currentTimeMillis() - startTime;
+	}
+	
+	/**
+	 * Enters Rhino context on current thread. Every <code>enterContext()</code>
+	 * call must be followed by <code>Context.exit()</code>
+	 */
+	private static Context enterContext() {
+		boolean nested = Context.getCurrentContext() != null;
+		Context cx = Context.enter();
+		if (!nested) {
+			cx.setOptimizationLevel(optimizationLevel);
+		}
+		return cx;
+	}
+	
+	private static synchronized ScriptableObject getSharedScope(Context cx) {
+		if (sharedScope == null) {
+			sharedScope = cx.initStandardObjects(null, true);
+			sharedScope.sealObject();
+		}
+		
+		return sharedScope;
+	}
+	
+	/**
+	 * Creates engine's own top-level scope which inherits standard objects 
+	 * from shared sealed scope
+	 */
+	private static Scriptable createScope(Context cx) {
+		Scriptable engineScope = cx.newObject(getSharedScope(cx));
+		engineScope.setPrototype(sharedScope);
+		engineScope.setParentScope(null);
+		return engineScope;
 	}
 
 	public static Emmet getSingleton() {
@@ -54,22 +183,235 @@ public class Emmet {
 		return singleton;
 	}
 	
+	/**
+	 * Sets file where expansion results are stored between sessions. 
+	 * Stored results are used while core scripts, system snippets and 
+	 * user data are the same
+	 * @param file Cache file, <code>null</code> disables persistent cache
+	 */
+	public static void setExpansionCacheFile(File file) {
+		expansionCacheFile = file;
+	}
+	
+	/**
+	 * Returns persistent storage of expansion results for engines created
+	 * with given data. Storage is loaded on first request
+	 */
+	private static ExpansionStore getExpansionStore(String dataKey) {
+		synchronized (ExpansionStore.class) {
+			if (expansionStore == null || !expansionStore.getFingerprint().equals(dataKey)) {
+				if (expansionStore != null) {
+					expansionStore.close();
+				}
+				expansionStore = ExpansionStore.open(expansionCacheFile, dataKey, expansionStoreSize);
+			}
+			
+			return expansionStore;
+		}
+	}
+	
+	/**
+	 * Releases resources held by engines, e.g. closes persistent 
+	 * expansion cache
+	 */
+	public static void dispose() {
+		synchronized (ExpansionStore.class) {
+			if (expansionStore != null) {
+				expansionStore.close();
+				expansionStore = null;
+			}
+		}
+	}
+	
+	/**
+	 * Returns key that identifies engine created from current core scripts,
+	 * system snippets and user data. Used to validate persistent expansion cache
+	 */
+	private String getDataKey(String systemSnippets) throws IOException {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < coreFiles.length; i++) {
+			key.append(Checksum.hash(getClass().getResourceAsStream(coreFiles[i]))).append(':');
+		}
+		
+		key.append(Checksum.hash(systemSnippets));
+		if (userDataDelegate != null) {
+			key.append(':').append(userDataDelegate.getFingerprint());
+		}
+		
+		return key.toString();
+	}
+	
+	/**
+	 * Check if engine is already initialized, e.g. <code>getSingleton()</code>
+	 * will return immediately
+	 */
+	public static boolean isReady() {
+		return singleton != null;
+	}
+	
+	/**
+	 * Returns time, in milliseconds, spent on engine initialization
+	 */
+	public long getInitTime() {
+		return initTime;
+	}
+	
 	public static void setUserDataDelegate(IUserData delegate) {
 		userDataDelegate = delegate;
 	}
 	
+	/**
+	 * Enables or disables loading of core scripts from classes precompiled
+	 * at build time. If disabled or classes are missing (e.g. when plugin
+	 * runs from workspace), scripts are evaluated from source
+	 */
+	public static void setUsePrecompiledScripts(boolean value) {
+		usePrecompiledScripts = value;
+	}
+	
+	/**
+	 * Sets Rhino optimization level for scripts evaluated from source: 
+	 * core files (when precompiled classes are not available), extensions 
+	 * and code evaluated by Emmet itself. Takes effect on next 
+	 * engine initialization
+	 * @param level Optimization level, from -1 (interpreted) to 9
+	 */
+	public static void setOptimizationLevel(int level) {
+		optimizationLevel = level;
+	}
+	
+	public static int getOptimizationLevel() {
+		return optimizationLevel;
+	}
+	
+	/**
+	 * Sets maximum number of expansion results cached by each engine.
+	 * Takes effect on next engine initialization
+	 * @param size Cache size, 0 disables cache
+	 */
+	public static void setExpansionCacheSize(int size) {
+		expansionCacheSize = size;
+	}
+	
+	/**
+	 * Returns cache of expansion results of current engine
+	 */
+	public ExpansionCache getExpansionCache() {
+		return expansionCache;
+	}
+	
+	/**
+	 * Drops current engine and all pooled engines: they will be re-created
+	 * with fresh user data on next request
+	 */
 	public static void reset() {
-		if (singleton == null)
-			return;
+		synchronized (Emmet.class) {
+			currentGeneration++;
+			singleton = null;
+		}
 		
-		Context.exit();
-		cx = null; 
-		scope = null;
-		singleton = null;
+		EmmetPool.getDefault().clear();
 	}
 	
-	private InputStreamReader getReaderForLocalFile(String fileName) {
-		InputStream is = this.getClass().getResourceAsStream(fileName);
+	/**
+	 * Applies changes of user data (snippets, abbreviations, variables and
+	 * output profiles) to current engine and all pooled engines, without 
+	 * re-creating them
+	 * @param delta Changed items, in the same format as user data passed 
+	 * to <code>javaLoadUserData()</code>. Removed items have 
+	 * <code>null</code> value
+	 */
+	public static void updateUserData(Object delta) {
+		synchronized (Emmet.class) {
+			userDataVersion++;
+			if (singleton != null && !singleton.applyUserData(delta)) {
+				singleton = null;
+			}
+			
+			EmmetPool.getDefault().updateUserData(delta);
+		}
+	}
+	
+	/**
+	 * Applies user data changes to current engine
+	 * @return <code>true</code> if changes were successfully applied
+	 */
+	synchronized boolean applyUserData(Object delta) {
+		try {
+			execJSFunction("javaUpdateUserData", delta);
+			dataVersion = userDataVersion;
+			return true;
+		} catch (Exception e) {
+			System.err.println("Unable to update Emmet user data: " + e.getMessage());
+			return false;
+		}
+	}
+	
+	/**
+	 * Check if current engine was created before last <code>reset()</code>
+	 * or missed user data update
+	 */
+	public boolean isStale() {
+		return generation != currentGeneration || dataVersion != userDataVersion;
+	}
+	
+	/**
+	 * Returns script instance precompiled from given core file, or 
+	 * <code>null</code> if there's no such class
+	 * @param packageName Package of precompiled class
+	 * @param fileName Script file name
+	 */
+	private static Script getPrecompiledScript(String packageName, String fileName) {
+		if (!usePrecompiledScripts)
+			return null;
+		
+		// class names are generated by Rhino's jsc tool from file names
+		int ext = fileName.lastIndexOf('.');
+		String className = packageName + "." 
+			+ (ext != -1 ? fileName.substring(0, ext) : fileName).replace('-', '_');
+		try {
+			Class<?> scriptClass = Class.forName(className, true, Emmet.class.getClassLoader());
+			return (Script) scriptClass.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Loads lazy core module into given scope. This method is registered 
+	 * as Emmet module loader in <code>java-wrapper.js</code> and should be 
+	 * called from JS only
+	 * @param name Module name
+	 * @param scope Engine's top-level scope
+	 * @return <code>true</code> if module was loaded
+	 */
+	public static boolean loadModule(String name, Scriptable scope) {
+		boolean isLazy = false;
+		for (int i = 0; i < lazyModules.length; i++) {
+			isLazy |= lazyModules[i].equals(name);
+		}
+		
+		if (!isLazy)
+			return false;
+		
+		Context cx = Context.getCurrentContext();
+		Script script = getPrecompiledScript(compiledModulesPackage, name);
+		if (script != null) {
+			script.exec(cx, scope);
+		} else {
+			String fileName = "modules/" + name + ".js";
+			try {
+				cx.evaluateReader(scope, getReaderForLocalFile(fileName), fileName, 1, null);
+			} catch (IOException e) {
+				throw Context.reportRuntimeError("Unable to load module " + name + ": " + e.getMessage());
+			}
+		}
+		
+		return true;
+	}
+	
+	private static InputStreamReader getReaderForLocalFile(String fileName) {
+		InputStream is = Emmet.class.getResourceAsStream(fileName);
 		return new InputStreamReader(is);
 	}
 	
@@ -86,34 +428,126 @@ public class Emmet {
 	
 	/**
 	 * Executes arbitrary JS function with passed arguments. Each argument is
-	 * automatically converted to JS type
+	 * automatically converted to JS type, maps and collections are passed
+	 * as native JS objects and arrays
 	 * @param name JS function name. May have namespaces 
 	 * (e.g. <code>emmet.require('actions').get</code>)
 	 * @param vargs
 	 * @return
 	 */
-	public Object execJSFunction(String name, Object... vargs) {
-		// temporary register all variables
-		Object wrappedObj;
-		StringBuilder jsArgs = new StringBuilder();
-		for (int i = 0; i < vargs.length; i++) {
-			wrappedObj = Context.javaToJS(vargs[i], scope);
-			ScriptableObject.putProperty(scope, "__javaParam" + i, wrappedObj);
-			if (i > 0) {
-				jsArgs.append(',');
+	public synchronized Object execJSFunction(String name, Object... vargs) {
+		Context cx = enterContext();
+		try {
+			return getJSFunction(name).call(cx, scope, vargs);
+		} finally {
+			Context.exit();
+		}
+	}
+	
+	/**
+	 * Returns handle of JS function with given name. The function is 
+	 * resolved only once, all subsequent calls return cached handle
+	 * @param name JS function name. May have namespaces 
+	 * (e.g. <code>emmet.require('actions').get</code>)
+	 * @return
+	 */
+	public synchronized JSFunction getJSFunction(String name) {
+		JSFunction fn = functions.get(name);
+		if (fn == null) {
+			Context cx = enterContext();
+			try {
+				fn = resolveJSFunction(cx, name);
+			} finally {
+				Context.exit();
 			}
-			jsArgs.append("__javaParam" + i);
+			functions.put(name, fn);
 		}
 		
-		// evaluate code
-		Object result = cx.evaluateString(scope, name + "(" + jsArgs.toString() + ");", "<eval>", 1, null);
+		return fn;
+	}
+	
+	private JSFunction resolveJSFunction(Context cx, String name) {
+		Scriptable thisObj = scope;
+		String member = name;
 		
-		// remove temp variables
-		for (int i = 0; i < vargs.length; i++) {
-			ScriptableObject.deleteProperty(scope, "__javaParam" + i);
+		// for namespaced names, evaluate owner expression to get valid 'this'
+		int dot = name.lastIndexOf('.');
+		if (dot != -1 && isIdentifier(name.substring(dot + 1))) {
+			Object owner = cx.evaluateString(scope, name.substring(0, dot), "<resolve>", 1, null);
+			thisObj = Context.toObject(owner, scope);
+			member = name.substring(dot + 1);
 		}
 		
-		return result;
+		Object fn = isIdentifier(member) 
+				? ScriptableObject.getProperty(thisObj, member)
+				: cx.evaluateString(scope, name, "<resolve>", 1, null);
+		
+		if (!(fn instanceof Function)) {
+			throw Context.reportRuntimeError("Unable to resolve JS function: " + name);
+		}
+		
+		return new JSFunction(name, (Function) fn, thisObj);
+	}
+	
+	private static boolean isIdentifier(String str) {
+		if (str.length() == 0 || !Character.isJavaIdentifierStart(str.charAt(0)))
+			return false;
+		
+		for (int i = 1; i < str.length(); i++) {
+			if (!Character.isJavaIdentifierPart(str.charAt(i)))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Loads extensions into engine: <code>.js</code> files are executed 
+	 * in their own function scope, so their declarations don't leak into
+	 * engine globals; <code>.json</code> files are loaded as user data
+	 * (e.g. <code>snippets.json</code>). Scripts are compiled once and
+	 * cached between engines, see {@link ExtensionCache}
+	 * @param files Extension files
+	 */
+	public synchronized void loadExtensions(List<File> files) {
+		Context cx = enterContext();
+		try {
+			List<ExtensionCache.Extension> extensions = ExtensionCache.getDefault()
+					.get(files, cx.getOptimizationLevel());
+			
+			Scriptable payload = cx.newObject(scope);
+			boolean hasPayload = false;
+			for (ExtensionCache.Extension ext : extensions) {
+				try {
+					if (ext.getScript() != null) {
+						Object fn = ext.getScript().exec(cx, scope);
+						if (fn instanceof Function) {
+							((Function) fn).call(cx, scope, scope, new Object[0]);
+						}
+					} else if (ext.getType().equals("json")) {
+						// parsed by engine as JS literal, like before
+						String name = ext.getFile().getName().toLowerCase();
+						ScriptableObject.putProperty(payload, name.substring(0, name.length() - 5), ext.getSource());
+						hasPayload = true;
+					}
+				} catch (Exception e) {
+					System.err.println("Unable to load \"" + ext.getFile() + "\" extension: " + e.getMessage());
+				}
+			}
+			
+			if (hasPayload) {
+				execJSFunction("emmet.require('bootstrap').loadUserData", payload);
+			}
+			
+			if (expansionCache != null) {
+				// extensions may add filters, generators and so on
+				expansionCache.invalidate();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			Context.exit();
+		}
 	}
 	
 	/**
@@ -130,4 +564,17 @@ public class Emmet {
 	public String getWrapPreview(IEmmetEditor editor, String abbr) {
 		return Context.toString(execJSFunction("previewWrapWithAbbreviation", editor, abbr));
 	}
+	
+	/**
+	 * Expands abbreviation without editor context. Unlike editor actions, 
+	 * this method can be safely used from any thread, e.g. on engine taken
+	 * from {@link EmmetPool}
+	 * @param abbr Abbreviation to expand
+	 * @param syntax Abbreviation's context syntax
+	 * @param profile Output profile name
+	 * @return Expanded abbreviation with tabstops
+	 */
+	public String expandAbbreviation(String abbr, String syntax, String profile) {
+		return Context.toString(execJSFunction("emmet.expandAbbreviation", abbr, syntax, profile));
+	}
 }
\ No newline at end of file
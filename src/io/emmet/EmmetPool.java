@@ -0,0 +1,145 @@
+package io.emmet;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Pool of Emmet engines for running scripts on several threads at once.
+ * Each engine has its own top-level scope and is used by a single thread
+ * at a time, while standard JS objects are shared between engines in a
+ * sealed scope. All engines are initialized with the same system snippets,
+ * user data and extensions, receive the same user data updates and are
+ * dropped on <code>Emmet.reset()</code>, so their vocabulary and profiles
+ * stay consistent.
+ *
+ * Note that editor actions call back to editor and should be performed on
+ * the thread that owns it (see <code>Emmet.getSingleton()</code>); pooled
+ * engines are meant for editor-independent jobs like
+ * <code>Emmet.expandAbbreviation()</code>
+ */
+public class EmmetPool {
+	private volatile static EmmetPool defaultPool;
+
+	private int maxSize;
+	private int created = 0;
+	private LinkedList<Emmet> idle = new LinkedList<Emmet>();
+
+	/**
+	 * Job performed on pooled engine
+	 */
+	public interface Task<T> {
+		public T run(Emmet engine);
+	}
+
+	public EmmetPool(int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Returns default pool with size equal to number of available processors
+	 */
+	public static EmmetPool getDefault() {
+		if (defaultPool == null) {
+			synchronized (EmmetPool.class) {
+				if (defaultPool == null) {
+					defaultPool = new EmmetPool(Runtime.getRuntime().availableProcessors());
+				}
+			}
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Takes idle engine from pool, creating a new one if pool is not full yet.
+	 * If all engines are busy, waits until one of them is released.
+	 * Every acquired engine must be returned with <code>release()</code>
+	 * @throws InterruptedException
+	 */
+	public Emmet acquire() throws InterruptedException {
+		synchronized (this) {
+			while (idle.isEmpty() && created >= maxSize) {
+				wait();
+			}
+
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+
+			created++;
+		}
+
+		// engine initialization is expensive, create it outside of lock
+		try {
+			return new Emmet();
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				created--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns engine to pool. Engines created before last
+	 * <code>Emmet.reset()</code> are discarded
+	 */
+	public synchronized void release(Emmet engine) {
+		if (engine.isStale()) {
+			created--;
+		} else {
+			idle.addLast(engine);
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * Runs task on pooled engine
+	 * @throws InterruptedException
+	 */
+	public <T> T run(Task<T> task) throws InterruptedException {
+		Emmet engine = acquire();
+		try {
+			return task.run(engine);
+		} finally {
+			release(engine);
+		}
+	}
+
+	/**
+	 * Applies user data changes to idle engines. Engines that are currently
+	 * in use are discarded when released
+	 * @see Emmet#updateUserData(Object)
+	 */
+	synchronized void updateUserData(Object delta) {
+		Iterator<Emmet> it = idle.iterator();
+		while (it.hasNext()) {
+			if (!it.next().applyUserData(delta)) {
+				it.remove();
+				created--;
+			}
+		}
+	}
+
+	/**
+	 * Removes all idle engines from pool. Engines that are currently in use
+	 * are discarded when released
+	 */
+	public synchronized void clear() {
+		created -= idle.size();
+		idle.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Returns number of engines created by this pool and not discarded yet
+	 */
+	public synchronized int getSize() {
+		return created;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+}
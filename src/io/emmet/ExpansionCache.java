@@ -0,0 +1,125 @@
+package io.emmet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of abbreviation expansion results. Each engine has its
+ * own cache: it's used by <code>emmet.expandAbbreviation()</code>
+ * (see <code>java-wrapper.js</code>) and is invalidated by engine
+ * whenever its vocabulary or output profiles are changed. Cache may be
+ * backed by persistent {@link ExpansionStore}, shared by all engines 
+ * created with the same data
+ */
+public class ExpansionCache {
+	private int maxSize;
+	private int version = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long storeHits = 0;
+	private LinkedHashMap<String, String> entries;
+	private ExpansionStore store;
+
+	public ExpansionCache(final int maxSize) {
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > ExpansionCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns cached expansion result
+	 * @param key Expansion key: abbreviation, syntax, profile and context
+	 * @return Cached result or <code>null</code>
+	 */
+	public synchronized String get(String key) {
+		String result = entries.get(key);
+		if (result == null && store != null) {
+			result = store.get(key);
+			if (result != null) {
+				storeHits++;
+				put(key, result);
+			}
+		}
+		
+		if (result != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+
+		return result;
+	}
+
+	public synchronized void put(String key, String value) {
+		if (maxSize > 0) {
+			entries.put(key, value);
+			if (store != null) {
+				store.put(key, value);
+			}
+		}
+	}
+	
+	/**
+	 * Sets persistent storage of expansion results. Storage is detached on
+	 * <code>invalidate()</code>, since its results were created with 
+	 * previous engine data
+	 */
+	public synchronized void setStore(ExpansionStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Removes all cached results. Should be called when any of expansion
+	 * sources (vocabulary, profiles, filters, etc.) is changed
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+		store = null;
+		version++;
+	}
+
+	/**
+	 * Returns number of <code>invalidate()</code> calls, e.g. version of
+	 * engine data cached results were created with
+	 */
+	public synchronized int getVersion() {
+		return version;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns number of hits that were loaded from persistent storage
+	 */
+	public synchronized long getStoreHits() {
+		return storeHits;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public synchronized String toString() {
+		long total = hits + misses;
+		return "Expansion cache: " + entries.size() + "/" + maxSize + " entries, "
+			+ hits + " hits (" + storeHits + " from disk), " + misses + " misses"
+			+ (total > 0 ? " (" + (hits * 100 / total) + "% hit rate)" : "");
+	}
+}
@@ -0,0 +1,194 @@
+package io.emmet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent storage of abbreviation expansion results, used as a second
+ * level of {@link ExpansionCache} between sessions. Results are appended
+ * to a file which starts with fingerprint of engine data (core scripts,
+ * system snippets, user data and extensions): if fingerprint doesn't
+ * match, the file is discarded. All results are loaded into memory on
+ * open; when file grows twice as large as the number of kept results,
+ * it's compacted
+ */
+public class ExpansionStore {
+	private static final String MAGIC = "emmet-expansions-1";
+	
+	/**
+	 * Maximum length of stored strings that surely fits modified UTF-8
+	 * record (65535 bytes)
+	 */
+	private static final int MAX_LENGTH = 65535 / 3;
+
+	private File file;
+	private String fingerprint;
+	private int maxSize;
+	private int records = 0;
+	private DataOutputStream out;
+	private LinkedHashMap<String, String> entries;
+
+	private ExpansionStore(File file, String fingerprint, final int maxSize) {
+		this.file = file;
+		this.fingerprint = fingerprint;
+		this.maxSize = maxSize;
+		entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > ExpansionStore.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Opens store from given file and loads all stored results
+	 * @param file Storage file
+	 * @param fingerprint Fingerprint of engine data
+	 * @param maxSize Maximum number of stored results
+	 * @return
+	 */
+	public static ExpansionStore open(File file, String fingerprint, int maxSize) {
+		ExpansionStore store = new ExpansionStore(file, fingerprint, maxSize);
+		boolean valid = store.load();
+		try {
+			if (!valid || store.records > store.entries.size() * 2) {
+				store.compact();
+			} else {
+				store.out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(file, true)));
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to open Emmet expansion cache: " + e.getMessage());
+			store.close();
+		}
+
+		return store;
+	}
+
+	/**
+	 * Loads stored results
+	 * @return <code>false</code> if file is missing, created for
+	 * different engine data or broken
+	 */
+	private boolean load() {
+		if (!file.isFile())
+			return false;
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (!MAGIC.equals(in.readUTF()) || !fingerprint.equals(in.readUTF()))
+				return false;
+
+			while (true) {
+				String key;
+				try {
+					key = in.readUTF();
+				} catch (EOFException e) {
+					return true;
+				}
+
+				entries.put(key, in.readUTF());
+				records++;
+			}
+		} catch (IOException e) {
+			// partially written record, rewrite file with loaded results
+			return false;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * Returns stored expansion result or <code>null</code>
+	 */
+	public synchronized String get(String key) {
+		return entries.get(key);
+	}
+
+	public synchronized void put(String key, String value) {
+		if (out == null || key.length() > MAX_LENGTH || value.length() > MAX_LENGTH
+				|| value.equals(entries.get(key)))
+			return;
+
+		entries.put(key, value);
+		try {
+			out.writeUTF(key);
+			out.writeUTF(value);
+			out.flush();
+			if (++records > maxSize * 2) {
+				compact();
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to write Emmet expansion cache: " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * Rewrites storage file with current results only
+	 * @throws IOException
+	 */
+	private void compact() throws IOException {
+		close(out);
+		out = null;
+
+		File tmpFile = new File(file.getPath() + ".tmp");
+		DataOutputStream tmp = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			tmp.writeUTF(MAGIC);
+			tmp.writeUTF(fingerprint);
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				tmp.writeUTF(entry.getKey());
+				tmp.writeUTF(entry.getValue());
+			}
+		} finally {
+			tmp.close();
+		}
+
+		file.delete();
+		if (!tmpFile.renameTo(file))
+			throw new IOException("Unable to rename " + tmpFile);
+
+		records = entries.size();
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+	/**
+	 * Closes storage file. Results are still available for reading,
+	 * but new ones are not stored anymore
+	 */
+	public synchronized void close() {
+		close(out);
+		out = null;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	private static void close(Closeable stream) {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) { }
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package io.emmet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * Cache of Emmet extension files. Each file is read and compiled only once:
+ * cached entry is reused while file's size and modification time are the
+ * same, or, if they were changed, while file's contents hash is the same.
+ * Scripts are compiled on worker threads, so a folder with several
+ * extensions is loaded in parallel
+ */
+public class ExtensionCache {
+	private volatile static ExtensionCache defaultCache;
+
+	private HashMap<String, Extension> entries = new HashMap<String, Extension>();
+	private ExecutorService executor;
+
+	/**
+	 * Extension file loaded into cache
+	 */
+	public static class Extension {
+		private File file;
+		private long size;
+		private long lastModified;
+		private String hash;
+		private String source;
+		private Script script;
+		private int optimizationLevel;
+
+		private Extension(File file, long size, long lastModified) {
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+
+		public String getSource() {
+			return source;
+		}
+
+		/**
+		 * Returns compiled script for <code>.js</code> extension
+		 * or <code>null</code> for other file types. Extension source is
+		 * wrapped into function expression: script returns function
+		 * that should be called to run extension
+		 */
+		public Script getScript() {
+			return script;
+		}
+
+		/**
+		 * Returns lower-cased file extension
+		 */
+		public String getType() {
+			String name = file.getName();
+			int ext = name.lastIndexOf('.');
+			return ext != -1 ? name.substring(ext + 1).toLowerCase() : "";
+		}
+
+		private boolean isModified(long size, long lastModified) {
+			return this.size != size || this.lastModified != lastModified;
+		}
+	}
+
+	public ExtensionCache(int threads) {
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Emmet extension compiler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns default cache that compiles extensions on as many threads
+	 * as there are available processors
+	 */
+	public static ExtensionCache getDefault() {
+		if (defaultCache == null) {
+			synchronized (ExtensionCache.class) {
+				if (defaultCache == null) {
+					defaultCache = new ExtensionCache(Runtime.getRuntime().availableProcessors());
+				}
+			}
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Returns loaded extensions for given files, in the same order.
+	 * Only new and modified files are read and compiled. Files that can't
+	 * be read or compiled are skipped
+	 * @param files Extension files
+	 * @param optimizationLevel Rhino optimization level for scripts
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public List<Extension> get(List<File> files, final int optimizationLevel) throws InterruptedException {
+		ArrayList<Future<Extension>> tasks = new ArrayList<Future<Extension>>();
+		for (final File file : files) {
+			tasks.add(executor.submit(new Callable<Extension>() {
+				@Override
+				public Extension call() throws Exception {
+					return load(file, optimizationLevel);
+				}
+			}));
+		}
+
+		ArrayList<Extension> result = new ArrayList<Extension>();
+		for (int i = 0; i < tasks.size(); i++) {
+			try {
+				Extension ext = tasks.get(i).get();
+				if (ext != null) {
+					result.add(ext);
+				}
+			} catch (ExecutionException e) {
+				System.err.println("Unable to load \"" + files.get(i) + "\" extension: "
+						+ e.getCause().getMessage());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns contents hash of given extension file
+	 * @throws IOException
+	 */
+	public String getHash(File file) throws IOException {
+		Extension ext = read(file);
+		return ext != null ? ext.getHash() : "";
+	}
+
+	/**
+	 * Stops worker threads of default cache. Next <code>getDefault()</code>
+	 * call creates a new cache
+	 */
+	public static void dispose() {
+		synchronized (ExtensionCache.class) {
+			if (defaultCache != null) {
+				defaultCache.executor.shutdown();
+				defaultCache = null;
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached extensions
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	private Extension load(File file, int optimizationLevel) throws IOException {
+		Extension ext = read(file);
+		if (ext == null || !ext.getType().equals("js"))
+			return ext;
+
+		synchronized (ext) {
+			if (ext.script == null || ext.optimizationLevel != optimizationLevel) {
+				Context cx = Context.enter();
+				try {
+					cx.setOptimizationLevel(optimizationLevel);
+					// keep extension on the first line to preserve line numbers
+					ext.script = cx.compileString("(function(){" + ext.source + "\n})", file.getPath(), 1, null);
+					ext.optimizationLevel = optimizationLevel;
+				} finally {
+					Context.exit();
+				}
+			}
+		}
+
+		return ext;
+	}
+
+	/**
+	 * Returns cached entry for given file, reading it if file was modified
+	 * @return Cache entry or <code>null</code> if file doesn't exist
+	 */
+	private Extension read(File file) throws IOException {
+		if (!file.isFile())
+			return null;
+
+		String path = file.getCanonicalPath();
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		Extension cached;
+		synchronized (this) {
+			cached = entries.get(path);
+			if (cached != null && !cached.isModified(size, lastModified))
+				return cached;
+		}
+
+		byte[] data = readFile(file);
+		String hash = Checksum.hash(data);
+		if (cached != null && cached.hash.equals(hash)) {
+			// file was touched but not changed
+			synchronized (this) {
+				cached.size = size;
+				cached.lastModified = lastModified;
+			}
+			return cached;
+		}
+
+		Extension ext = new Extension(file, size, lastModified);
+		ext.hash = hash;
+		ext.source = new String(data, "UTF-8");
+		synchronized (this) {
+			entries.put(path, ext);
+		}
+
+		return ext;
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+			while (buf.hasRemaining() && channel.read(buf) != -1);
+
+			byte[] data = buf.array();
+			if (buf.hasRemaining()) {
+				// file was truncated while reading
+				byte[] result = new byte[buf.position()];
+				System.arraycopy(data, 0, result, 0, result.length);
+				return result;
+			}
+
+			return data;
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -101,6 +101,47 @@ public interface IEmmetEditor {
 	 */
 	public String getContent();
 	
+	/**
+	 * Returns read-only view of editor's content. Unlike 
+	 * <code>getContent()</code>, it shouldn't copy content, so actions
+	 * can read a few characters around caret of a large document cheaply.
+	 * View is valid until content is modified
+	 */
+	public CharSequence getContentView();
+	
+	/**
+	 * Returns part of editor's content, from <code>start</code> to 
+	 * <code>end</code> index. Indexes are clamped to content bounds, so 
+	 * result is shorter than requested if range goes beyond content end.
+	 * Actions use it to read a window of content around caret instead of 
+	 * whole content
+	 * @param start Start index of editor's content
+	 * @param end End index of editor's content
+	 */
+	public String getContentRange(int start, int end);
+	
+	/**
+	 * Returns HTML/XML tag pair around <code>pos</code>, found the same way
+	 * as <code>html_matcher</code> does. Editors that can maintain tag index
+	 * of their content may implement it to avoid scanning content on
+	 * each lookup; others should return <code>null</code>, so actions
+	 * will fall back to <code>html_matcher</code>
+	 * @param pos Caret position
+	 * @param mode Matching mode (output profile name)
+	 * @return Array of <code>[kind, openStart, openEnd, closeStart,
+	 * closeEnd]</code> as returned by <code>TagIndex.findPair()</code>
+	 * or <code>null</code>
+	 */
+	public int[] getTagPair(int pos, String mode);
+	
+	/**
+	 * Returns modification stamp of editor's content: it should change 
+	 * every time content is modified. Actions use it to cache results 
+	 * between calls
+	 * @return Stamp or -1 if editor doesn't track modifications
+	 */
+	public long getModificationStamp();
+	
 	/**
 	 * Returns current editor's syntax mode
 	 */
@@ -3,4 +3,11 @@ package io.emmet;
 public interface IUserData {
 	public void load(Emmet ctx);
 	public void loadExtensions(Emmet ctx);
+	
+	/**
+	 * Returns string that changes whenever user data or extensions are 
+	 * changed, e.g. hash of their contents. Used to validate expansion
+	 * results stored between sessions
+	 */
+	public String getFingerprint();
 }
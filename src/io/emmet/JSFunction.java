@@ -0,0 +1,53 @@
+package io.emmet;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Resolved handle of JS function that can be invoked directly from Java,
+ * without compiling call expression on each invocation. Keeps reference to
+ * object the function was taken from so methods like
+ * <code>emmet.require('actions').run</code> receive valid <code>this</code>
+ */
+public class JSFunction {
+	private String name;
+	private Function fn;
+	private Scriptable thisObj;
+
+	public JSFunction(String name, Function fn, Scriptable thisObj) {
+		this.name = name;
+		this.fn = fn;
+		this.thisObj = thisObj;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Function getFunction() {
+		return fn;
+	}
+
+	public Scriptable getThisObject() {
+		return thisObj;
+	}
+
+	/**
+	 * Calls function with passed arguments. Each argument is automatically
+	 * converted to JS type: maps and collections become native JS objects
+	 * and arrays (see {@link JSMarshaller})
+	 * @param cx Context entered on current thread
+	 * @param scope Top-level scope used for argument conversion
+	 * @param vargs
+	 * @return
+	 */
+	public Object call(Context cx, Scriptable scope, Object... vargs) {
+		Object[] args = new Object[vargs.length];
+		for (int i = 0; i < vargs.length; i++) {
+			args[i] = JSMarshaller.toJS(cx, scope, vargs[i]);
+		}
+
+		return fn.call(cx, scope, thisObj, args);
+	}
+}
@@ -0,0 +1,122 @@
+package io.emmet;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Converts Java data structures into native JS objects and arrays, so
+ * they can be passed to engine without serializing to JSON string
+ * and evaluating it on JS side. All methods must be called with context
+ * entered on current thread
+ */
+public class JSMarshaller {
+	private JSMarshaller() {
+
+	}
+
+	/**
+	 * Converts Java value into JS one. Maps are converted to JS objects,
+	 * collections and arrays to JS arrays (recursively), all other
+	 * values are wrapped with <code>Context.javaToJS()</code>
+	 * @param cx Context entered on current thread
+	 * @param scope Top-level scope of engine
+	 * @param value Value to convert
+	 * @return
+	 */
+	public static Object toJS(Context cx, Scriptable scope, Object value) {
+		if (value instanceof Map<?, ?>) {
+			Scriptable obj = cx.newObject(scope);
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				ScriptableObject.putProperty(obj, String.valueOf(entry.getKey()),
+						toJS(cx, scope, entry.getValue()));
+			}
+			return obj;
+		}
+
+		if (value instanceof Collection<?>) {
+			Collection<?> items = (Collection<?>) value;
+			Object[] elements = new Object[items.size()];
+			Iterator<?> it = items.iterator();
+			for (int i = 0; i < elements.length; i++) {
+				elements[i] = toJS(cx, scope, it.next());
+			}
+			return cx.newArray(scope, elements);
+		}
+
+		if (value instanceof Object[]) {
+			Object[] items = (Object[]) value;
+			Object[] elements = new Object[items.length];
+			for (int i = 0; i < items.length; i++) {
+				elements[i] = toJS(cx, scope, items[i]);
+			}
+			return cx.newArray(scope, elements);
+		}
+
+		if (value instanceof Character) {
+			return value.toString();
+		}
+
+		return Context.javaToJS(value, scope);
+	}
+
+	/**
+	 * Parses JSON from given reader directly into JS objects. Unlike
+	 * evaluating JSON source in engine, this method doesn't compile
+	 * anything
+	 * @param cx Context entered on current thread
+	 * @param scope Top-level scope of engine
+	 * @param reader JSON source
+	 * @return
+	 * @throws IOException
+	 */
+	public static Object parseJSON(Context cx, Scriptable scope, Reader reader) throws IOException {
+		JsonReader json = new JsonReader(reader);
+		json.setLenient(true);
+		try {
+			return readValue(cx, scope, json);
+		} finally {
+			json.close();
+		}
+	}
+
+	private static Object readValue(Context cx, Scriptable scope, JsonReader json) throws IOException {
+		switch (json.peek()) {
+			case BEGIN_OBJECT:
+				Scriptable obj = cx.newObject(scope);
+				json.beginObject();
+				while (json.hasNext()) {
+					String name = json.nextName();
+					ScriptableObject.putProperty(obj, name, readValue(cx, scope, json));
+				}
+				json.endObject();
+				return obj;
+			case BEGIN_ARRAY:
+				ArrayList<Object> elements = new ArrayList<Object>();
+				json.beginArray();
+				while (json.hasNext()) {
+					elements.add(readValue(cx, scope, json));
+				}
+				json.endArray();
+				return cx.newArray(scope, elements.toArray());
+			case NUMBER:
+				return Double.valueOf(json.nextDouble());
+			case BOOLEAN:
+				return Boolean.valueOf(json.nextBoolean());
+			case NULL:
+				json.nextNull();
+				return null;
+			default:
+				return json.nextString();
+		}
+	}
+}
@@ -3,18 +3,14 @@ package io.emmet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Set;
-
-import org.mozilla.javascript.Context;
-import org.mozilla.javascript.NativeArray;
-import org.mozilla.javascript.NativeObject;
-import org.mozilla.javascript.Scriptable;
-import org.mozilla.javascript.ScriptableObject;
 
 /**
  * A coomon structure that contains list of tabstop groups and valid
- * text for these groups
+ * text for these groups. Tabstops are stored in primitive arrays, so even 
+ * large expansions with thousands of tabstops don't produce a lot of 
+ * objects
  * @author sergey
  *
  */
@@ -23,32 +19,205 @@ public class TabStopStructure {
 	 * Valid text for current tabstob structure
 	 */
 	private String text = "";
-	private HashMap<String, TabStopGroup> groups;
+	
+	/**
+	 * Tabstops in order of appearance: start, end and group id of each
+	 * tabstop are stored in parallel arrays
+	 */
+	private int count = 0;
+	private int[] starts = new int[8];
+	private int[] ends = new int[8];
+	private int[] groupIds = new int[8];
+	
+	/**
+	 * Group names, indexed by group id
+	 */
+	private ArrayList<String> groupNames = new ArrayList<String>();
+	private HashMap<String, Integer> groupIndex = new HashMap<String, Integer>();
+	
+	/**
+	 * Group ids in numeric order of group names, with offsets of each 
+	 * group's tabstops in <code>groupedStops</code>. Created on first 
+	 * request after tabstops were modified
+	 */
+	private int[] groupOrder;
+	private int[] groupOffsets;
+	private int[] groupedStops;
+	
+	/**
+	 * Group of tabstops with <code>cursor</code> placeholder
+	 */
+	public static final String CARETS_GROUP = "carets";
 	
 	public TabStopStructure(String text) {
-		createGroups();
-		
-		Emmet jse = Emmet.getSingleton();
-		Scriptable tabstopData = (Scriptable) jse.execJSFunction("javaExtractTabstops", text);
-		if (tabstopData != null) {
-			text = Context.toString(ScriptableObject.getProperty(tabstopData, "text"));
-			NativeArray tabstops = (NativeArray) ScriptableObject.getProperty(tabstopData, "tabstops");
-			NativeObject tabstopItem;
-			for (int i = 0; i < tabstops.getLength(); i++) {
-				tabstopItem = (NativeObject) ScriptableObject.getProperty(tabstops, i);
-				addTabStopToGroup(
-						Context.toString(ScriptableObject.getProperty(tabstopItem, "group")), 
-						(int) Context.toNumber(ScriptableObject.getProperty(tabstopItem, "start")), 
-						(int) Context.toNumber(ScriptableObject.getProperty(tabstopItem, "end")));
+		setText(extract(text));
+	}
+	
+	/**
+	 * Locates tabstops (<code>$N</code>, <code>${N}</code> and 
+	 * <code>${N:placeholder}</code>) in given text, adds them to groups and 
+	 * returns text where tabstops are replaced with their placeholders and 
+	 * escaped characters are unescaped. This is a Java version of 
+	 * <code>tabStops.extract()</code> and must produce the same output
+	 * @param text
+	 * @return
+	 */
+	private String extract(String text) {
+		int len = text.length();
+		StringBuilder buf = new StringBuilder(len);
+		HashMap<String, String> placeholders = new HashMap<String, String>();
+		ArrayList<String> markGroups = new ArrayList<String>();
+		ArrayList<int[]> marks = new ArrayList<int[]>();
+		
+		int i = 0;
+		while (i < len) {
+			char ch = text.charAt(i++);
+			if (ch == '\\' && i < len) {
+				// escaped character
+				buf.append(text.charAt(i++));
+				continue;
+			}
+			
+			if (ch == '$' && i < len) {
+				String group = null;
+				String placeholder = null;
+				int end = -1;
+				int numEnd = skipDigits(text, i);
+				
+				if (numEnd > i) {
+					// $N
+					group = text.substring(i, numEnd);
+					end = numEnd;
+				} else if (text.charAt(i) == '{') {
+					end = skipVariable(text, i + 1);
+					if (end == -1) {
+						numEnd = skipDigits(text, i + 1);
+						if (numEnd > i + 1 && numEnd < len) {
+							if (text.charAt(numEnd) == ':') {
+								int close = findPlaceholderEnd(text, numEnd + 1);
+								if (close != -1) {
+									// ${N:placeholder}
+									placeholder = text.substring(numEnd + 1, close);
+									end = close + 1;
+								}
+							} else if (text.charAt(numEnd) == '}') {
+								// ${N}
+								end = numEnd + 1;
+							}
+							
+							if (end != -1) {
+								group = text.substring(i + 1, numEnd);
+							}
+						}
+					}
+				}
+				
+				if (end != -1) {
+					// variables are kept as is
+					if (group != null) {
+						if ("cursor".equals(placeholder)) {
+							group = CARETS_GROUP;
+						} else if (placeholder != null) {
+							// unify placeholder value for single group
+							placeholders.put(group, placeholder);
+						}
+						
+						markGroups.add(group);
+						marks.add(new int[]{buf.length(), buf.length() + end - i + 1});
+					}
+					
+					buf.append(text, i - 1, end);
+					i = end;
+					continue;
+				}
 			}
+			
+			buf.append(ch);
 		}
-		setText(text);
+		
+		if (marks.isEmpty())
+			return buf.toString();
+		
+		// replace all tabstops with placeholders
+		StringBuilder result = new StringBuilder(buf.length());
+		int lastIx = 0;
+		for (int j = 0; j < marks.size(); j++) {
+			int[] mark = marks.get(j);
+			String group = markGroups.get(j);
+			String ph = placeholders.get(group);
+			
+			result.append(buf, lastIx, mark[0]);
+			int pos = result.length();
+			if (ph != null) {
+				result.append(ph);
+			}
+			
+			addTabStopToGroup(group, pos, result.length());
+			lastIx = mark[1];
+		}
+		
+		result.append(buf, lastIx, buf.length());
+		return result.toString();
 	}
 	
-	private void createGroups() {
-		groups = new HashMap<String, TabStopGroup>();
+	private static int skipDigits(String text, int pos) {
+		while (pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+			pos++;
+		}
+		return pos;
 	}
-
+	
+	/**
+	 * Matches variable name and closing brace, e.g. <code>var_name}</code>
+	 * @return Index after closing brace or -1 if there's no variable
+	 */
+	private static int skipVariable(String text, int pos) {
+		int len = text.length();
+		if (pos >= len)
+			return -1;
+		
+		char ch = text.charAt(pos);
+		if (!((ch >= 'a' && ch <= 'z') || ch == '_' || ch == '-'))
+			return -1;
+		
+		while (++pos < len) {
+			ch = text.charAt(pos);
+			if (ch == '}')
+				return pos + 1;
+			
+			if (!(Character.isLetterOrDigit(ch) && ch < 128 || ch == '_' || ch == '-'))
+				return -1;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Finds closing brace of placeholder. Placeholder is at least one 
+	 * character long and can't contain line breaks
+	 * @return Index of closing brace or -1 if not found
+	 */
+	private static int findPlaceholderEnd(String text, int pos) {
+		int len = text.length();
+		if (pos >= len || isLineTerminator(text.charAt(pos)))
+			return -1;
+		
+		while (++pos < len) {
+			char ch = text.charAt(pos);
+			if (ch == '}')
+				return pos;
+			
+			if (isLineTerminator(ch))
+				return -1;
+		}
+		
+		return -1;
+	}
+	
+	private static boolean isLineTerminator(char ch) {
+		return ch == '\n' || ch == '\r' || ch == '\u2028' || ch == '\u2029';
+	}
+	
 	public void setText(String text) {
 		this.text = text;
 	}
@@ -58,15 +227,25 @@ public class TabStopStructure {
 	}
 	
 	public void addTabStopToGroup(String groupName, int start, int end) {
-		if (!groups.containsKey(groupName)) {
-			groups.put(groupName, new TabStopGroup());
+		Integer groupId = groupIndex.get(groupName);
+		if (groupId == null) {
+			groupId = groupNames.size();
+			groupNames.add(groupName);
+			groupIndex.put(groupName, groupId);
 		}
 		
-		getTabStopGroup(groupName).addTabStop(start, end);
-	}
-
-	public HashMap<String, TabStopGroup> getGroups() {
-		return groups;
+		if (count == starts.length) {
+			int size = count * 2;
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			groupIds = Arrays.copyOf(groupIds, size);
+		}
+		
+		starts[count] = start;
+		ends[count] = end;
+		groupIds[count] = groupId;
+		count++;
+		groupOrder = null;
 	}
 	
 	/**
@@ -74,32 +253,155 @@ public class TabStopStructure {
 	 * @return
 	 */
 	public int getTabStopsCount() {
-		int result = 0;
-		for (TabStopGroup item : groups.values()) {
-			result += item.getLength();
-		}
-		
-		return result;
+		return count;
 	}
 	
-	public String[] getSortedGroupKeys() {
-		Set<String> keySet = groups.keySet();
-		String[] keys = keySet.toArray(new String[keySet.size()]);
-		Arrays.sort(keys);
-		return keys;
+	/**
+	 * Returns number of tabstop groups
+	 */
+	public int getGroupCount() {
+		return groupNames.size();
+	}
+	
+	/**
+	 * Returns name of group at given position. Groups are ordered by 
+	 * their numeric value, <code>carets</code> group is the last one
+	 * @param group Group position, from 0 to <code>getGroupCount() - 1</code>
+	 */
+	public String getGroupName(int group) {
+		sortGroups();
+		return groupNames.get(groupOrder[group]);
+	}
+	
+	/**
+	 * Returns number of tabstops in given group
+	 * @param group Group position
+	 */
+	public int getGroupSize(int group) {
+		sortGroups();
+		return groupOffsets[group + 1] - groupOffsets[group];
+	}
+	
+	/**
+	 * Check if given group contains caret positions rather than linked
+	 * placeholders: it's either <code>${0}</code> or <code>cursor</code> group
+	 * @param group Group position
+	 */
+	public boolean isCaretGroup(int group) {
+		String name = getGroupName(group);
+		return name.equals(CARETS_GROUP) || name.equals("0");
+	}
+	
+	/**
+	 * Returns start of tabstop in given group
+	 * @param group Group position
+	 * @param index Tabstop index in group
+	 */
+	public int getStart(int group, int index) {
+		return starts[getStopIndex(group, index)];
+	}
+	
+	/**
+	 * Returns end of tabstop in given group
+	 * @param group Group position
+	 * @param index Tabstop index in group
+	 */
+	public int getEnd(int group, int index) {
+		return ends[getStopIndex(group, index)];
 	}
 	
 	public TabStop getFirstTabStop() {
-		String[] names = getSortedGroupKeys();
-		return (names.length > 0) ? getTabStop(names[0], 0) : null;
+		return count > 0 ? getTabStop(0, 0) : null;
+	}
+	
+	public TabStop getTabStop(int group, int index) {
+		if (index >= getGroupSize(group))
+			return null;
+		
+		int ix = getStopIndex(group, index);
+		return new TabStop(starts[ix], ends[ix]);
 	}
 	
-	public TabStopGroup getTabStopGroup(String groupName) {
-		return (TabStopGroup) groups.get(groupName);
+	private int getStopIndex(int group, int index) {
+		sortGroups();
+		return groupedStops[groupOffsets[group] + index];
 	}
 	
-	public TabStop getTabStop(String groupName, int index) {
-		ArrayList<TabStop> tabStops = getTabStopGroup(groupName).getTabStopList();
-		return (index < tabStops.size()) ? tabStops.get(index) : null;
+	/**
+	 * Orders groups by numeric value of their names and lays out tabstops
+	 * by group, keeping order of appearance inside each group
+	 */
+	private void sortGroups() {
+		if (groupOrder != null)
+			return;
+		
+		int groupCount = groupNames.size();
+		Integer[] order = new Integer[groupCount];
+		for (int i = 0; i < groupCount; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compareGroupNames(groupNames.get(a), groupNames.get(b));
+			}
+		});
+		
+		groupOrder = new int[groupCount];
+		int[] positions = new int[groupCount];
+		for (int i = 0; i < groupCount; i++) {
+			groupOrder[i] = order[i];
+			positions[order[i]] = i;
+		}
+		
+		groupOffsets = new int[groupCount + 1];
+		for (int i = 0; i < count; i++) {
+			groupOffsets[positions[groupIds[i]] + 1]++;
+		}
+		
+		for (int i = 0; i < groupCount; i++) {
+			groupOffsets[i + 1] += groupOffsets[i];
+		}
+		
+		groupedStops = new int[count];
+		int[] fill = Arrays.copyOf(groupOffsets, groupCount);
+		for (int i = 0; i < count; i++) {
+			groupedStops[fill[positions[groupIds[i]]]++] = i;
+		}
+	}
+	
+	/**
+	 * Compares group names: numbers are compared by value (so 
+	 * <code>2</code> goes before <code>10</code>), other names go last
+	 */
+	private static int compareGroupNames(String a, String b) {
+		boolean numA = isNumber(a), numB = isNumber(b);
+		if (numA != numB)
+			return numA ? -1 : 1;
+		
+		if (numA) {
+			String trimA = trimZeros(a), trimB = trimZeros(b);
+			if (trimA.length() != trimB.length())
+				return trimA.length() - trimB.length();
+			
+			int result = trimA.compareTo(trimB);
+			if (result != 0)
+				return result;
+		}
+		
+		return a.compareTo(b);
+	}
+	
+	private static boolean isNumber(String str) {
+		return str.length() > 0 && skipDigits(str, 0) == str.length();
+	}
+	
+	private static String trimZeros(String str) {
+		int i = 0;
+		while (i < str.length() - 1 && str.charAt(i) == '0') {
+			i++;
+		}
+		return str.substring(i);
 	}
 }
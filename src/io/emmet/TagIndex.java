@@ -0,0 +1,758 @@
+package io.emmet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of HTML/XML tags in document, used to find tag pair around caret
+ * without scanning document text with JS <code>html_matcher</code>.
+ * <br><br>
+ * Index stores every tag, comment start and comment end token in document:
+ * the same tokens <code>html_matcher</code> finds when it checks each
+ * <code>&lt;</code> character, including tags inside attribute values and
+ * comments. Pair lookup replays matcher's algorithm over tokens, so results
+ * are the same as matcher's, and skips balanced tag pairs using precomputed
+ * pair links.
+ * <br><br>
+ * Index is updated incrementally: document changes are accumulated with
+ * <code>changed()</code> and on next lookup only tokens that may be
+ * affected by changes are lexed again. Each token remembers how far its
+ * lexer has read the text, so it's known which tokens depend on changed text
+ * @author sergey
+ *
+ */
+public class TagIndex {
+	/** Lookup result kinds */
+	public static final int NONE = 0;
+	public static final int COMMENT = 1;
+	public static final int TAG = 2;
+
+	/** Token types */
+	private static final byte TEXT = 0;
+	private static final byte OPEN = 1;
+	private static final byte CLOSE = 2;
+	private static final byte COMMENT_START = 3;
+	private static final byte COMMENT_END = 4;
+
+	/** Token flags */
+	private static final byte HAS_CLOSE = 1;
+	private static final byte EMPTY_ELEMENT = 2;
+
+	/** Pair links that are not tag indexes */
+	private static final int NO_PAIR = -1;
+	private static final int UNKNOWN_PAIR = -2;
+	private static final int NOT_COMPUTED = -3;
+
+	/**
+	 * Extent of closing tag link which depends on absence of comment end
+	 * after it
+	 */
+	private static final int FRAGILE = Integer.MIN_VALUE;
+
+	/**
+	 * Initial amount of text available to tag regexps, enlarged when
+	 * regexp hits its end
+	 */
+	private static final int LOOKAHEAD = 256;
+
+	private static final Pattern START_TAG = Pattern.compile(
+			"<([\\w\\:\\-]+)((?:\\s+[\\w\\-:]+(?:\\s*=\\s*(?:(?:\"[^\"]*\")|(?:'[^']*')|[^>\\s]+))?)*)\\s*(\\/?)>");
+	private static final Pattern END_TAG = Pattern.compile("<\\/([\\w\\:\\-]+)[^>]*>");
+
+	private static final HashSet<String> emptyElements = new HashSet<String>(Arrays.asList(
+			"area,base,basefont,br,col,frame,hr,img,input,isindex,link,meta,param,embed".split(",")));
+
+	private boolean built = false;
+
+	private int count = 0;
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	/** End of text read by token lexer, exclusive */
+	private int[] readEnds = new int[64];
+	private byte[] types = new byte[64];
+	private byte[] flags = new byte[64];
+	private String[] names = new String[64];
+
+	private HashMap<String, String> tagNames = new HashMap<String, String>();
+
+	/** Maximum distance between token start and its read end */
+	private int maxSpan = 0;
+
+	/**
+	 * Changed range: <code>damageStart</code>-<code>damageOldEnd</code>
+	 * in indexed text was replaced with
+	 * <code>damageStart</code>-<code>damageNewEnd</code> of current text
+	 */
+	private boolean damaged = false;
+	private int damageStart;
+	private int damageOldEnd;
+	private int damageNewEnd;
+
+	/** Positions of comment tokens, computed lazily after index update */
+	private int[] commentStarts;
+	private int[] commentEnds;
+
+	/**
+	 * Tag pair links for XHTML (0) and HTML (1) matching modes, see
+	 * <code>getPairs()</code>, and index of the farthest token examined
+	 * when link was computed. Links are kept on index update unless
+	 * they depend on changed tokens
+	 */
+	private int[][] pairs = new int[2][];
+	private int[][] extents = new int[2][];
+	private boolean[] pairsComplete = new boolean[2];
+
+	/** Extent of last computed pair link */
+	private int extent;
+
+	/**
+	 * Registers text change. Should be called for every change of indexed
+	 * text
+	 * @param offset Change offset
+	 * @param length Length of replaced text
+	 * @param textLength Length of inserted text
+	 */
+	public synchronized void changed(int offset, int length, int textLength) {
+		if (!built)
+			return;
+
+		int delta = textLength - length;
+		if (!damaged) {
+			damaged = true;
+			damageStart = offset;
+			damageOldEnd = offset + length;
+			damageNewEnd = offset + textLength;
+		} else {
+			// merge with previous changes: text after damageNewEnd is
+			// the same as after damageOldEnd in indexed text
+			if (offset + length > damageNewEnd) {
+				damageOldEnd += offset + length - damageNewEnd;
+			}
+
+			damageNewEnd = Math.max(damageNewEnd, offset + length) + delta;
+			damageStart = Math.min(damageStart, offset);
+		}
+	}
+
+	/**
+	 * Finds tag pair around given position, like
+	 * <code>html_matcher.getTags()</code> does
+	 * @param text Current text
+	 * @param pos Caret position
+	 * @param mode Matching mode (profile name): <code>html</code> or any
+	 * other for XHTML
+	 * @return Array of <code>[kind, openStart, openEnd, closeStart,
+	 * closeEnd]</code>. <code>kind</code> is <code>TAG</code> for tag
+	 * pair, unary or unclosed tag (closing tag offsets are -1),
+	 * <code>COMMENT</code> for comment (its range is returned as opening
+	 * tag) or <code>NONE</code> if nothing found
+	 */
+	public synchronized int[] findPair(CharSequence text, int pos, String mode) {
+		update(text);
+
+		boolean html = "html".equals(mode);
+		int[] links = getPairs(html);
+
+		// find opening tag
+		int[] stack = new int[16];
+		int depth = 0;
+		int opening = -1, closing = -1;
+		int i = lowerBound(pos) - 1;
+
+		while (i >= 0) {
+			switch (types[i]) {
+			case CLOSE:
+				if (starts[i] < pos && ends[i] > pos) {
+					// direct hit on searched closing tag
+					closing = i;
+				} else if (links[i] >= 0) {
+					// balanced pair
+					i = links[i] - 1;
+					continue;
+				} else {
+					if (depth == stack.length)
+						stack = Arrays.copyOf(stack, depth * 2);
+					stack[depth++] = i;
+				}
+				break;
+			case OPEN:
+				if (isUnary(i, html)) {
+					if (starts[i] < pos && ends[i] > pos)
+						return result(TAG, starts[i], ends[i], -1, -1);
+				} else if (depth > 0 && names[stack[depth - 1]].equals(names[i])) {
+					depth--;
+				} else {
+					// found nearest unclosed tag
+					opening = i;
+				}
+				break;
+			case COMMENT_START:
+				int end = getCommentEnd(starts[i]);
+				if (end >= pos)
+					return result(COMMENT, starts[i], end, -1, -1);
+				break;
+			case COMMENT_END:
+				// skip comment
+				i = findCommentStart(starts[i]);
+				if (i == -1) {
+					return result(NONE, -1, -1, -1, -1);
+				}
+				i--;
+				continue;
+			}
+
+			if (opening != -1)
+				break;
+			i--;
+		}
+
+		if (opening == -1)
+			return result(NONE, -1, -1, -1, -1);
+
+		// find closing tag
+		if (closing == -1) {
+			depth = 0;
+			i = lowerBound(pos);
+			while (i < count) {
+				switch (types[i]) {
+				case OPEN:
+					if (!isUnary(i, html)) {
+						if (links[i] >= 0) {
+							i = links[i] + 1;
+							continue;
+						}
+
+						if (depth == stack.length)
+							stack = Arrays.copyOf(stack, depth * 2);
+						stack[depth++] = i;
+					}
+					break;
+				case CLOSE:
+					if (depth > 0 && names[stack[depth - 1]].equals(names[i])) {
+						depth--;
+					} else {
+						closing = i;
+					}
+					break;
+				case COMMENT_START:
+					i = skipComment(i);
+					continue;
+				case COMMENT_END:
+					// caret was inside comment with invalid HTML
+					int start = findCommentStart(starts[i]);
+					return result(COMMENT, start != -1 ? starts[start] : -1, starts[i] + 3, -1, -1);
+				}
+
+				if (closing != -1)
+					break;
+				i++;
+			}
+		}
+
+		if (closing == -1)
+			return result(TAG, starts[opening], ends[opening], -1, -1);
+
+		return result(TAG, starts[opening], ends[opening], starts[closing], ends[closing]);
+	}
+
+	/**
+	 * Returns number of indexed tokens
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Drops index: it will be built again on next lookup
+	 */
+	public synchronized void reset() {
+		built = false;
+		damaged = false;
+		count = 0;
+		maxSpan = 0;
+		commentStarts = commentEnds = null;
+		pairs[0] = pairs[1] = null;
+		tagNames.clear();
+	}
+
+	private static int[] result(int kind, int openStart, int openEnd, int closeStart, int closeEnd) {
+		return new int[]{kind, openStart, openEnd, closeStart, closeEnd};
+	}
+
+	private boolean isUnary(int i, boolean html) {
+		return (flags[i] & HAS_CLOSE) != 0 || (html && (flags[i] & EMPTY_ELEMENT) != 0);
+	}
+
+	/**
+	 * Returns index of first token that starts at or after given position
+	 */
+	private int lowerBound(int pos) {
+		return lowerBound(starts, count, pos);
+	}
+
+	private static int lowerBound(int[] arr, int size, int pos) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (arr[mid] < pos)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	/**
+	 * Returns end of comment started at given position: the first
+	 * <code>--&gt;</code> after it
+	 */
+	private int getCommentEnd(int start) {
+		int ix = lowerBound(commentEnds, commentEnds.length, start);
+		return ix < commentEnds.length ? commentEnds[ix] + 3 : start + 2;
+	}
+
+	/**
+	 * Returns index of nearest comment start token before given position,
+	 * -1 if there's no such token
+	 */
+	private int findCommentStart(int pos) {
+		int ix = lowerBound(commentStarts, commentStarts.length, pos) - 1;
+		return ix >= 0 ? lowerBound(commentStarts[ix]) : -1;
+	}
+
+	/**
+	 * Returns index of first token after comment that starts with given
+	 * token
+	 */
+	private int skipComment(int i) {
+		int ix = lowerBound(commentEnds, commentEnds.length, starts[i]);
+		return lowerBound(ix < commentEnds.length ? commentEnds[ix] + 3 : starts[i] + 2);
+	}
+
+	/**
+	 * Returns tag pair links for given matching mode. For closing tag, it's
+	 * index of opening tag where backward search started from this tag
+	 * pops it from stack; for opening tag, it's index of closing tag where
+	 * forward search pops it. Searches that skip linked pairs give the
+	 * same results as matcher
+	 */
+	private int[] getPairs(boolean html) {
+		if (commentStarts == null) {
+			int starts = 0, ends = 0;
+			for (int i = 0; i < count; i++) {
+				if (types[i] == COMMENT_START)
+					starts++;
+				else if (types[i] == COMMENT_END)
+					ends++;
+			}
+
+			commentStarts = new int[starts];
+			commentEnds = new int[ends];
+			starts = ends = 0;
+			for (int i = 0; i < count; i++) {
+				if (types[i] == COMMENT_START)
+					commentStarts[starts++] = this.starts[i];
+				else if (types[i] == COMMENT_END)
+					commentEnds[ends++] = this.starts[i];
+			}
+		}
+
+		int mode = html ? 1 : 0;
+		if (pairs[mode] == null) {
+			pairs[mode] = new int[count];
+			extents[mode] = new int[count];
+			Arrays.fill(pairs[mode], NOT_COMPUTED);
+			pairsComplete[mode] = false;
+		}
+
+		int[] links = pairs[mode];
+		int[] linkExtents = extents[mode];
+		if (!pairsComplete[mode]) {
+			// closing tag links refer to preceding links, opening tag
+			// links to following ones
+			for (int i = 0; i < count; i++) {
+				if (types[i] == CLOSE && links[i] == NOT_COMPUTED) {
+					links[i] = findOpenPair(i, links, html);
+					linkExtents[i] = extent;
+				}
+			}
+
+			for (int i = count - 1; i >= 0; i--) {
+				if (types[i] == OPEN && links[i] == NOT_COMPUTED) {
+					links[i] = isUnary(i, html) ? NO_PAIR : findClosePair(i, links, html);
+					linkExtents[i] = isUnary(i, html) ? i : extent;
+				}
+			}
+
+			pairsComplete[mode] = true;
+		}
+
+		return links;
+	}
+
+	/**
+	 * Updates pair links of given mode after tokens
+	 * <code>first</code>-<code>last</code> were replaced with
+	 * <code>lexed</code> new tokens
+	 */
+	private void updatePairs(int mode, int first, int last, int lexed) {
+		int[] links = pairs[mode], linkExtents = extents[mode];
+		if (links == null)
+			return;
+
+		int shift = lexed - (last - first);
+		int[] newLinks = new int[links.length + shift];
+		int[] newExtents = new int[newLinks.length];
+
+		// links of preceding closing tags don't depend on following
+		// tokens, links of opening tags do if they reach changed tokens
+		for (int i = 0; i < first; i++) {
+			boolean valid = types[i] == CLOSE 
+					? links[i] != UNKNOWN_PAIR && linkExtents[i] != FRAGILE
+					: linkExtents[i] < first;
+			newLinks[i] = valid ? links[i] : NOT_COMPUTED;
+			newExtents[i] = linkExtents[i];
+		}
+
+		Arrays.fill(newLinks, first, first + lexed, NOT_COMPUTED);
+
+		// links of following opening tags don't depend on preceding
+		// tokens, links of closing tags do if they reach changed tokens
+		for (int i = last; i < links.length; i++) {
+			int j = i + shift;
+			boolean valid = types[j] == OPEN 
+					|| (links[i] != UNKNOWN_PAIR && linkExtents[i] >= last);
+			newLinks[j] = !valid ? NOT_COMPUTED : links[i] >= 0 ? links[i] + shift : links[i];
+			newExtents[j] = linkExtents[i] == Integer.MAX_VALUE ? linkExtents[i] : linkExtents[i] + shift;
+		}
+
+		pairs[mode] = newLinks;
+		extents[mode] = newExtents;
+		pairsComplete[mode] = false;
+	}
+
+	/**
+	 * Searches backward for opening tag that pairs closing tag
+	 * <code>ix</code>. Returns <code>UNKNOWN_PAIR</code> if result depends
+	 * on caret position: there are tokens that overlap closing tag
+	 */
+	private int findOpenPair(int ix, int[] links, boolean html) {
+		int pos = starts[ix];
+		int i = ix - 1;
+		boolean fragile = false;
+		int result = NO_PAIR;
+
+		loop:
+		while (i >= 0) {
+			switch (types[i]) {
+			case CLOSE:
+				if (ends[i] > pos) {
+					result = UNKNOWN_PAIR;
+					break loop;
+				}
+				if (links[i] < 0) {
+					result = links[i];
+					break loop;
+				}
+				i = links[i] - 1;
+				continue;
+			case OPEN:
+				if (!isUnary(i, html)) {
+					result = names[i].equals(names[ix]) ? i : NO_PAIR;
+					break loop;
+				}
+				if (ends[i] > pos) {
+					result = UNKNOWN_PAIR;
+					break loop;
+				}
+				break;
+			case COMMENT_START:
+				int end = getCommentEnd(starts[i]);
+				if (end > pos) {
+					result = UNKNOWN_PAIR;
+					break loop;
+				}
+				if (end == starts[i] + 2) {
+					// there's no comment end after this tag
+					fragile = true;
+				}
+				break;
+			case COMMENT_END:
+				i = findCommentStart(starts[i]);
+				if (i == -1)
+					break loop;
+				i--;
+				continue;
+			}
+
+			i--;
+		}
+
+		extent = fragile ? FRAGILE : i;
+		return result;
+	}
+
+	/**
+	 * Searches forward for closing tag that pairs opening tag
+	 * <code>ix</code>
+	 */
+	private int findClosePair(int ix, int[] links, boolean html) {
+		int i = ix + 1;
+		int result = NO_PAIR;
+		boolean reachedEnd = false;
+
+		loop:
+		while (i < count) {
+			switch (types[i]) {
+			case OPEN:
+				if (!isUnary(i, html)) {
+					if (links[i] < 0)
+						break loop;
+					i = links[i] + 1;
+					continue;
+				}
+				break;
+			case CLOSE:
+				result = names[i].equals(names[ix]) ? i : NO_PAIR;
+				break loop;
+			case COMMENT_START:
+				if (getCommentEnd(starts[i]) == starts[i] + 2) {
+					// there's no comment end after this tag
+					reachedEnd = true;
+				}
+				i = skipComment(i);
+				continue;
+			case COMMENT_END:
+				break loop;
+			}
+
+			i++;
+		}
+
+		extent = reachedEnd || i >= count ? Integer.MAX_VALUE : i;
+		return result;
+	}
+
+	/**
+	 * Builds index or updates it with accumulated changes
+	 */
+	private void update(CharSequence text) {
+		if (!built) {
+			count = 0;
+			maxSpan = 0;
+			lex(text, 0, text.length());
+			built = true;
+			damaged = false;
+			commentStarts = commentEnds = null;
+			pairs[0] = pairs[1] = null;
+			return;
+		}
+
+		if (!damaged)
+			return;
+
+		// find tokens that depend on changed text, in indexed text offsets
+		int relexFrom = Math.max(damageStart - 2, 0);
+		int first = lowerBound(relexFrom);
+		for (int i = first - 1; i >= 0 && starts[i] + maxSpan > damageStart; i--) {
+			if (readEnds[i] > damageStart)
+				first = i;
+		}
+
+		if (first < count)
+			relexFrom = Math.min(relexFrom, starts[first]);
+
+		int last = lowerBound(damageOldEnd);
+		int delta = damageNewEnd - damageOldEnd;
+
+		// lex changed range after existing tokens, then move tokens that 
+		// follow changed range right after lexed ones
+		int oldCount = count;
+		lex(text, relexFrom, damageNewEnd);
+		int lexed = count - oldCount;
+		int tail = oldCount - last;
+
+		int[] lexedStarts = Arrays.copyOfRange(starts, oldCount, count);
+		int[] lexedEnds = Arrays.copyOfRange(ends, oldCount, count);
+		int[] lexedReadEnds = Arrays.copyOfRange(readEnds, oldCount, count);
+		byte[] lexedTypes = Arrays.copyOfRange(types, oldCount, count);
+		byte[] lexedFlags = Arrays.copyOfRange(flags, oldCount, count);
+		String[] lexedNames = Arrays.copyOfRange(names, oldCount, count);
+
+		System.arraycopy(starts, last, starts, first + lexed, tail);
+		System.arraycopy(ends, last, ends, first + lexed, tail);
+		System.arraycopy(readEnds, last, readEnds, first + lexed, tail);
+		System.arraycopy(types, last, types, first + lexed, tail);
+		System.arraycopy(flags, last, flags, first + lexed, tail);
+		System.arraycopy(names, last, names, first + lexed, tail);
+
+		System.arraycopy(lexedStarts, 0, starts, first, lexed);
+		System.arraycopy(lexedEnds, 0, ends, first, lexed);
+		System.arraycopy(lexedReadEnds, 0, readEnds, first, lexed);
+		System.arraycopy(lexedTypes, 0, types, first, lexed);
+		System.arraycopy(lexedFlags, 0, flags, first, lexed);
+		System.arraycopy(lexedNames, 0, names, first, lexed);
+
+		int newCount = first + lexed + tail;
+		for (int i = first + lexed; i < newCount; i++) {
+			starts[i] += delta;
+			ends[i] += delta;
+			readEnds[i] += delta;
+		}
+
+		Arrays.fill(names, newCount, count, null);
+		count = newCount;
+
+		updatePairs(0, first, last, lexed);
+		updatePairs(1, first, last, lexed);
+		commentStarts = commentEnds = null;
+		damaged = false;
+	}
+
+	private void ensureCapacity(int size) {
+		if (size > starts.length) {
+			size = Math.max(size, starts.length * 2);
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			readEnds = Arrays.copyOf(readEnds, size);
+			types = Arrays.copyOf(types, size);
+			flags = Arrays.copyOf(flags, size);
+			names = Arrays.copyOf(names, size);
+		}
+	}
+
+	private void add(byte type, int start, int end, int readEnd, String name, byte flag) {
+		ensureCapacity(count + 1);
+		starts[count] = start;
+		ends[count] = end;
+		readEnds[count] = readEnd;
+		types[count] = type;
+		flags[count] = flag;
+		names[count] = name;
+		maxSpan = Math.max(maxSpan, readEnd - start);
+		count++;
+	}
+
+	/**
+	 * Adds tokens that start in given range of text
+	 */
+	private void lex(CharSequence text, int from, int to) {
+		int len = text.length();
+		to = Math.min(to, len);
+		Matcher m = START_TAG.matcher(text);
+
+		for (int i = from; i < to; i++) {
+			char ch = text.charAt(i);
+			if (ch == '<') {
+				lexTag(text, i, m);
+			} else if (ch == '-' && i + 2 < len
+					&& text.charAt(i + 1) == '-' && text.charAt(i + 2) == '>') {
+				add(COMMENT_END, i, i + 3, i + 3, null, (byte) 0);
+			}
+		}
+	}
+
+	private void lexTag(CharSequence text, int start, Matcher m) {
+		int len = text.length();
+		char next = start + 1 < len ? text.charAt(start + 1) : 0;
+
+		if (next == '!') {
+			boolean isComment = start + 3 < len && text.charAt(start + 2) == '-'
+					&& text.charAt(start + 3) == '-';
+			int readEnd = Math.min(start + 4, len + 1);
+			add(isComment ? COMMENT_START : TEXT, start, start + 4, readEnd, null, (byte) 0);
+			return;
+		}
+
+		if (lexSimpleTag(text, start, next == '/'))
+			return;
+
+		Pattern pattern = next == '/' ? END_TAG : START_TAG;
+		m.usePattern(pattern);
+
+		// regexp result is final if it didn't hit the end of available text
+		int regionEnd = start;
+		boolean found;
+		do {
+			regionEnd = Math.min(len, regionEnd + Math.max(LOOKAHEAD, regionEnd - start));
+			m.region(start, regionEnd);
+			found = m.lookingAt();
+		} while (m.hitEnd() && regionEnd < len);
+
+		int readEnd = m.hitEnd() ? len + 1 : regionEnd;
+		if (!found) {
+			add(TEXT, start, start + 1, readEnd, null, (byte) 0);
+		} else if (pattern == END_TAG) {
+			add(CLOSE, start, m.end(), readEnd, getName(m.group(1)), (byte) 0);
+		} else {
+			addOpenTag(start, m.end(), readEnd, m.group(1), m.group(3).length() > 0);
+		}
+	}
+
+	/**
+	 * Lexes tag without attributes, like <code>&lt;li&gt;</code>,
+	 * <code>&lt;br/&gt;</code> or <code>&lt;/li&gt;</code>, without
+	 * regexps: most of tags in document are such
+	 * @return <code>false</code> if tag is not a simple one
+	 */
+	private boolean lexSimpleTag(CharSequence text, int start, boolean closing) {
+		int len = text.length();
+		int nameStart = closing ? start + 2 : start + 1;
+		int i = nameStart;
+		while (i < len && isNameChar(text.charAt(i)))
+			i++;
+
+		if (i == nameStart || i >= len)
+			return false;
+
+		int nameEnd = i;
+		boolean selfClosing = false;
+		if (!closing && text.charAt(i) == '/' && i + 1 < len) {
+			selfClosing = true;
+			i++;
+		}
+
+		if (text.charAt(i) != '>')
+			return false;
+
+		String name = text.subSequence(nameStart, nameEnd).toString();
+		if (closing)
+			add(CLOSE, start, i + 1, i + 1, getName(name), (byte) 0);
+		else
+			addOpenTag(start, i + 1, i + 1, name, selfClosing);
+		return true;
+	}
+
+	private void addOpenTag(int start, int end, int readEnd, String name, boolean selfClosing) {
+		name = getName(name);
+		byte flag = 0;
+		if (selfClosing)
+			flag |= HAS_CLOSE;
+		if (emptyElements.contains(name))
+			flag |= EMPTY_ELEMENT;
+		add(OPEN, start, end, readEnd, name, flag);
+	}
+
+	private static boolean isNameChar(char ch) {
+		return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+				|| ch == '_' || ch == ':' || ch == '-';
+	}
+
+	/**
+	 * Returns lower-cased tag name, shared by all tokens with this name
+	 */
+	private String getName(String name) {
+		String lower = name.toLowerCase();
+		String result = tagNames.get(lower);
+		if (result == null) {
+			tagNames.put(lower, lower);
+			result = lower;
+		}
+
+		return result;
+	}
+}
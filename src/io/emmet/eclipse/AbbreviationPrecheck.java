@@ -0,0 +1,83 @@
+package io.emmet.eclipse;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Quick check performed by Tab key handler before running 'Expand
+ * Abbreviation' action. Most Tab presses are plain indentation, where
+ * nothing can be expanded, but action has to detect editor syntax and
+ * call JS engine to find it out. This check inspects only the character
+ * before caret: if it's a whitespace or caret is at line start,
+ * <code>actionUtils.extractAbbreviation()</code> stops right at caret
+ * and finds no abbreviation, so action isn't called at all.
+ * <br><br>
+ * In CSS, action may expand without abbreviation: gradient handler
+ * adds vendor-prefixed gradients when caret is anywhere inside property
+ * value with gradient, like <code>background: |lg(red, blue)</code>, so
+ * such Tab presses are always passed to action
+ * @author sergey
+ *
+ */
+public class AbbreviationPrecheck {
+	private static long hits = 0;
+	private static long misses = 0;
+
+	/**
+	 * Checks if abbreviation may be expanded at caret position of given
+	 * editor
+	 * @return <code>false</code> if there's definitely nothing to expand
+	 */
+	public static boolean mayExpand(ITextEditor editor, IDocument doc) {
+		boolean result = true;
+		ISelection sel = editor.getSelectionProvider() != null
+				? editor.getSelectionProvider().getSelection() : null;
+
+		if (sel instanceof ITextSelection && ((ITextSelection) sel).getLength() == 0) {
+			int offset = ((ITextSelection) sel).getOffset();
+			try {
+				if (offset <= doc.getLineOffset(doc.getLineOfOffset(offset))
+						|| Character.isWhitespace(doc.getChar(offset - 1))) {
+					result = isCSS(editor);
+				}
+			} catch (BadLocationException e) { }
+		}
+
+		if (result)
+			misses++;
+		else
+			hits++;
+
+		return result;
+	}
+
+	/**
+	 * Checks if caret of given editor is in CSS: syntax is cached per
+	 * document partition, so it's cheap for repeated Tab presses
+	 */
+	private static boolean isCSS(ITextEditor editor) {
+		String syntax = EditorTypeInvestigator.getSyntax(new EclipseEmmetEditor(editor));
+		return EditorTypeInvestigator.TYPE_CSS.equals(syntax);
+	}
+
+	/**
+	 * Returns number of Tab presses where action was skipped by this check
+	 */
+	public static long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns number of Tab presses passed to 'Expand Abbreviation' action
+	 */
+	public static long getMisses() {
+		return misses;
+	}
+
+	public static void resetCounters() {
+		hits = misses = 0;
+	}
+}
@@ -0,0 +1,82 @@
+package io.emmet.eclipse;
+
+import io.emmet.SelectionData;
+
+/**
+ * Editor state of a single Emmet action. Actions query editor many times
+ * (syntax, profile, caret position, line delimiter), and some of these
+ * queries are expensive in Eclipse: syntax detection computes document
+ * partitioning and looks up active workbench page, selection is read from
+ * selection provider. Action context computes each value at most once per
+ * action; selection is computed again only after action modified editor
+ * selection or content
+ * @author sergey
+ *
+ */
+public class ActionContext {
+	private EclipseEmmetEditor editor;
+
+	private boolean syntaxResolved = false;
+	private String syntax;
+	private String profile;
+	private SelectionData selection;
+	private String newline;
+	private String filePath;
+
+	public ActionContext(EclipseEmmetEditor editor) {
+		this.editor = editor;
+	}
+
+	/**
+	 * Returns syntax of editor at caret position where action started,
+	 * <code>null</code> if it can't be detected
+	 */
+	public String getSyntax() {
+		if (!syntaxResolved) {
+			syntax = EditorTypeInvestigator.getSyntax(editor);
+			syntaxResolved = true;
+		}
+
+		return syntax;
+	}
+
+	public String getProfileName() {
+		if (profile == null) {
+			profile = EditorTypeInvestigator.getOutputProfile(getSyntax());
+		}
+
+		return profile;
+	}
+
+	public SelectionData getSelectionRange() {
+		if (selection == null) {
+			selection = editor.readSelectionRange();
+		}
+
+		return new SelectionData(selection.getStart(), selection.getEnd());
+	}
+
+	/**
+	 * Resets cached selection. Should be called when action modifies
+	 * editor selection or content
+	 */
+	public void resetSelection() {
+		selection = null;
+	}
+
+	public String getNewline() {
+		if (newline == null) {
+			newline = editor.readNewline();
+		}
+
+		return newline;
+	}
+
+	public String getFilePath() {
+		if (filePath == null) {
+			filePath = editor.readFilePath();
+		}
+
+		return filePath;
+	}
+}
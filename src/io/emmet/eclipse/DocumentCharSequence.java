@@ -0,0 +1,62 @@
+package io.emmet.eclipse;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Read-only <code>CharSequence</code> view of document range. Characters 
+ * are read directly from document, so creating view and its 
+ * sub-sequences doesn't copy content. View bounds are fixed when it's 
+ * created: it's valid until document is modified
+ * @author sergey
+ *
+ */
+public class DocumentCharSequence implements CharSequence {
+	private IDocument doc;
+	private int offset;
+	private int length;
+
+	public DocumentCharSequence(IDocument doc) {
+		this(doc, 0, doc.getLength());
+	}
+
+	public DocumentCharSequence(IDocument doc, int offset, int length) {
+		this.doc = doc;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+
+		try {
+			return doc.getChar(offset + index);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range: " + start + ", " + end + ", length: " + length);
+
+		return new DocumentCharSequence(doc, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		try {
+			return doc.get(offset, length);
+		} catch (BadLocationException e) {
+			throw new IndexOutOfBoundsException(e.getMessage());
+		}
+	}
+}
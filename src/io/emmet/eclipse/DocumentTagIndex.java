@@ -0,0 +1,63 @@
+package io.emmet.eclipse;
+
+import io.emmet.TagIndex;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+/**
+ * Tag index of document, updated from document events. Index is built
+ * on first lookup and then only changed parts of document are lexed again,
+ * so tag pair lookups in large documents don't scan document text
+ * @author sergey
+ *
+ */
+public class DocumentTagIndex implements IDocumentListener {
+	private static Map<IDocument, DocumentTagIndex> indexes = new WeakHashMap<IDocument, DocumentTagIndex>();
+
+	/**
+	 * Index doesn't reference document, otherwise document will never
+	 * be removed from weak map
+	 */
+	private TagIndex index = new TagIndex();
+
+	private DocumentTagIndex(IDocument doc) {
+		doc.addDocumentListener(this);
+	}
+
+	/**
+	 * Returns tag index of given document
+	 */
+	public static synchronized DocumentTagIndex get(IDocument doc) {
+		DocumentTagIndex index = indexes.get(doc);
+		if (index == null) {
+			index = new DocumentTagIndex(doc);
+			indexes.put(doc, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Finds tag pair around given position of document
+	 * @see TagIndex#findPair(CharSequence, int, String)
+	 */
+	public int[] findPair(IDocument doc, int pos, String mode) {
+		return index.findPair(new DocumentCharSequence(doc), pos, mode);
+	}
+
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent event) {
+
+	}
+
+	@Override
+	public void documentChanged(DocumentEvent event) {
+		String text = event.getText();
+		index.changed(event.getOffset(), event.getLength(), text != null ? text.length() : 0);
+	}
+}
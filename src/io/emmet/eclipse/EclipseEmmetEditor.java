@@ -1,27 +1,27 @@
 package io.emmet.eclipse;
 
+import io.emmet.ContentDiff;
 import io.emmet.IEmmetEditor;
 import io.emmet.SelectionData;
 import io.emmet.TabStop;
-import io.emmet.TabStopGroup;
 import io.emmet.TabStopStructure;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextSelection;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.TextSelection;
 import org.eclipse.jface.text.TextUtilities;
-import org.eclipse.jface.text.link.LinkedModeModel;
-import org.eclipse.jface.text.link.LinkedModeUI;
-import org.eclipse.jface.text.link.LinkedPosition;
-import org.eclipse.jface.text.link.LinkedPositionGroup;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionProvider;
 import org.eclipse.jface.window.Window;
@@ -43,6 +43,12 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 	
 	private HashMap<String, ArrayList<String>> proposals;
 	
+	/**
+	 * Context of currently running action
+	 */
+	private ActionContext context;
+	private int actionDepth = 0;
+	
 	public EclipseEmmetEditor() {
 		
 	}
@@ -52,6 +58,10 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 	}
 	
 	public void setContext(IEditorPart editor) {
+		if (editor != this.editor) {
+			context = actionDepth > 0 ? new ActionContext(this) : null;
+		}
+		
 		this.editor = editor;
 		doc = EclipseEmmetHelper.getDocument(editor);
 		if (proposals == null) {
@@ -63,8 +73,39 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 		return editor != null && doc != null;
 	}
 	
+	/**
+	 * Starts Emmet action: until action is finished, editor state (syntax,
+	 * profile, selection, etc.) is computed only once, see 
+	 * {@link ActionContext}. Actions may be nested, each 
+	 * <code>beginAction()</code> call must be paired with 
+	 * <code>endAction()</code>
+	 */
+	public void beginAction() {
+		if (actionDepth++ == 0) {
+			context = new ActionContext(this);
+		}
+	}
+	
+	public void endAction() {
+		if (actionDepth > 0 && --actionDepth == 0) {
+			context = null;
+		}
+	}
+	
+	/**
+	 * Returns context of currently running action, or <code>null</code> 
+	 * if there's no running action
+	 */
+	public ActionContext getActionContext() {
+		return context;
+	}
+	
 	@Override
 	public SelectionData getSelectionRange() {
+		return context != null ? context.getSelectionRange() : readSelectionRange();
+	}
+	
+	SelectionData readSelectionRange() {
 		ISelectionProvider sp = editor.getEditorSite().getSelectionProvider();
 		ISelection selection = sp.getSelection();
 			
@@ -81,6 +122,9 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 	@Override
 	public void createSelection(int start, int end) {
 		editor.getEditorSite().getSelectionProvider().setSelection(new TextSelection(start, end - start));
+		if (context != null) {
+			context.resetSelection();
+		}
 	}
 
 	@Override
@@ -151,64 +195,61 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 		newValue = tabStops.getText();
 		
 		try {
-			doc.replace(start, end - start, newValue);
+			replaceRange(start, end, newValue);
 			
 			int totalLinks = tabStops.getTabStopsCount();
 			
 			if (totalLinks < 1) {
-				tabStops.addTabStopToGroup("carets", newValue.length(), newValue.length());
+				tabStops.addTabStopToGroup(TabStopStructure.CARETS_GROUP, newValue.length(), newValue.length());
 			}
 			
-			String[] tabGroups = tabStops.getSortedGroupKeys();
 			TabStop firstTabStop = tabStops.getFirstTabStop();
 			
 			if (totalLinks > 1 || firstTabStop != null && firstTabStop.getStart() != firstTabStop.getEnd()) {
-				ITextViewer viewer = EclipseEmmetHelper.getTextViewer(editor);
-				LinkedModeModel model = new LinkedModeModel();
-				int exitPos = -1;
-				
-				for (int i = 0; i < tabGroups.length; i++) {
-					TabStopGroup tabGroup = tabStops.getTabStopGroup(tabGroups[i]);
-					LinkedPositionGroup group = null;
-					
-					if (tabGroups[i].equals("carets") || tabGroups[i].equals("0")) {
-						int caretCount = tabGroup.getTabStopList().size();
-						for (int j = 0; j < caretCount; j++) {
-							TabStop ts = tabGroup.getTabStopList().get(j);
-							group = new LinkedPositionGroup();
-							group.addPosition(new LinkedPosition(doc, start + ts.getStart(), ts.getLength()));
-							model.addGroup(group);
-							if (j == caretCount - 1) {
-								exitPos = start + ts.getStart();
-							}							
-						}
-					} else {
-						group = new LinkedPositionGroup();
-						
-						for (int j = 0; j < tabGroup.getTabStopList().size(); j++) {
-							TabStop ts = tabGroup.getTabStopList().get(j);
-							group.addPosition(new LinkedPosition(doc, start + ts.getStart(), ts.getLength()));
-						}
-						
-						model.addGroup(group);
-					}
-				}
-				
-				model.forceInstall();
-				LinkedModeUI linkUI = new LinkedModeUI(model, viewer);
-				if (exitPos != -1) {
-					linkUI.setExitPosition(viewer, exitPos, 0, Integer.MAX_VALUE);
-				}
-				
 				// Aptana has a buggy linked mode implementation, use simple 
 				// mode for it 
-				linkUI.setSimpleMode(isApatana());
-				linkUI.enter();
+				ITextViewer viewer = EclipseEmmetHelper.getTextViewer(editor);
+				new LinkedTabStops(viewer, tabStops, start, isApatana()).link();
 			} else {
 				setCaretPos(start + firstTabStop.getStart());
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			if (context != null) {
+				context.resetSelection();
+			}
+		}
+	}
+
+	/**
+	 * Replaces document range with text. Only regions that actually differ
+	 * are replaced, so whole content rewrites don't cause full document 
+	 * repartitioning and huge undo entries; several regions are replaced
+	 * in a single rewrite session
+	 * @throws BadLocationException
+	 */
+	private void replaceRange(int start, int end, String text) throws BadLocationException {
+		List<int[]> regions = ContentDiff.diff(new DocumentCharSequence(doc, start, end - start), text);
+		DocumentRewriteSession session = null;
+		
+		if (regions.size() > 1 && doc instanceof IDocumentExtension4) {
+			session = ((IDocumentExtension4) doc).startRewriteSession(regions.size() > 20 
+					? DocumentRewriteSessionType.UNRESTRICTED 
+					: DocumentRewriteSessionType.UNRESTRICTED_SMALL);
+		}
+		
+		try {
+			// replace from the end so offsets of previous regions are kept
+			for (int i = regions.size() - 1; i >= 0; i--) {
+				int[] region = regions.get(i);
+				doc.replace(start + region[0], region[1] - region[0], 
+						text.substring(region[2], region[3]));
+			}
+		} finally {
+			if (session != null) {
+				((IDocumentExtension4) doc).stopRewriteSession(session);
+			}
 		}
 	}
 
@@ -244,6 +285,10 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 	}
 	
 	public String getNewline() {
+		return context != null ? context.getNewline() : readNewline();
+	}
+	
+	String readNewline() {
 		return TextUtilities.getDefaultLineDelimiter(doc);
 	}
 	
@@ -274,10 +319,42 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 	public String getContent() {
 		return doc.get();
 	}
+	
+	@Override
+	public CharSequence getContentView() {
+		return new DocumentCharSequence(doc);
+	}
+	
+	@Override
+	public String getContentRange(int start, int end) {
+		int length = doc.getLength();
+		start = Math.min(Math.max(start, 0), length);
+		end = Math.min(Math.max(end, start), length);
+		
+		try {
+			return doc.get(start, end - start);
+		} catch (BadLocationException e) {
+			return "";
+		}
+	}
 
+	@Override
+	public int[] getTagPair(int pos, String mode) {
+		return DocumentTagIndex.get(doc).findPair(doc, pos, mode);
+	}
+	
+	@Override
+	public long getModificationStamp() {
+		return doc instanceof IDocumentExtension4 
+				? ((IDocumentExtension4) doc).getModificationStamp()
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+	
 	@Override
 	public String getSyntax() {
-		String syntax = EditorTypeInvestigator.getSyntax(this);
+		String syntax = context != null 
+				? context.getSyntax() 
+				: EditorTypeInvestigator.getSyntax(this);
 		if (syntax == null)
 			syntax = EditorTypeInvestigator.TYPE_HTML;
 		return syntax;
@@ -285,7 +362,9 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 
 	@Override
 	public String getProfileName() {
-		return EditorTypeInvestigator.getOutputProfile(this);
+		return context != null 
+				? context.getProfileName() 
+				: EditorTypeInvestigator.getOutputProfile(this);
 	}
 
 	public String prompt(String type, String title) {
@@ -379,7 +458,12 @@ public class EclipseEmmetEditor implements IEmmetEditor {
 
 	@Override
 	public String getFilePath() {
-		return EclipseEmmetHelper.getURI(editor).substring(5);
+		return context != null ? context.getFilePath() : readFilePath();
+	}
+	
+	String readFilePath() {
+		String uri = EclipseEmmetHelper.getURI(editor);
+		return uri != null ? uri.substring(5) : null;
 	}
 	
 	public IEditorPart getEditor() {
@@ -80,25 +80,22 @@ public class EclipseEmmetHelper {
 		return null;
 	}
 	
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static ITextViewer getTextViewer(IEditorPart editor) {
-		Field svField;
 		ITextViewer viewer = null;
 		
 		if (editor instanceof AbstractTextEditor) {
-			try {
-				svField = AbstractTextEditor.class.getDeclaredField("fSourceViewer");
-				svField.setAccessible(true);
-				viewer = (ITextViewer) svField.get((AbstractTextEditor) editor);
-			} catch (Exception e) {	}
+			Field svField = ReflectionCache.getDeclaredField(AbstractTextEditor.class, "fSourceViewer");
+			if (svField != null) {
+				try {
+					viewer = (ITextViewer) svField.get(editor);
+				} catch (Exception e) {	}
+			}
 		}
 		
 		if (viewer == null) {
-			Class editorClass = editor.getClass();
-			try {
-				Method getViewer = editorClass.getMethod("getViewer", new Class[]{});
-				viewer = (ITextViewer) getViewer.invoke(editor);
-			} catch (Exception e) {	}
+			Object result = ReflectionCache.invoke(editor, "getViewer");
+			if (result instanceof ITextViewer)
+				viewer = (ITextViewer) result;
 		}
 		
 		return viewer;
@@ -194,7 +191,7 @@ public class EclipseEmmetHelper {
 		String s = getPathFromEditorInput(input);
 		if (s == null) {
 			try {
-				Method method = input.getClass().getMethod("getURI"); //$NON-NLS-1$
+				Method method = ReflectionCache.getMethod(input.getClass(), "getURI"); //$NON-NLS-1$
 				return ((URI) method.invoke(input)).toString();
 			} catch (Exception e) {
 
@@ -1,6 +1,7 @@
 package io.emmet.eclipse;
 
 import io.emmet.Emmet;
+import io.emmet.ExtensionCache;
 import io.emmet.eclipse.preferences.PreferenceConstants;
 
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -35,7 +36,10 @@ public class EclipseEmmetPlugin extends AbstractUIPlugin {
 		super.start(context);
 		plugin = this;
 		
-		Emmet.setUserDataDelegate(new EclipseUserData());
+		EclipseUserData userData = new EclipseUserData();
+		final UserDataUpdateJob updateJob = new UserDataUpdateJob(userData);
+		Emmet.setUserDataDelegate(userData);
+		Emmet.setExpansionCacheFile(getStateLocation().append("expansions.cache").toFile());
 		
 		// XXX maybe there's a better place for such listener?
 		getDefault().getPreferenceStore().addPropertyChangeListener(new IPropertyChangeListener() {
@@ -43,6 +47,10 @@ public class EclipseEmmetPlugin extends AbstractUIPlugin {
 			public void propertyChange(PropertyChangeEvent event) {
 				if (event.getProperty() == PreferenceConstants.P_EXTENSIONS_PATH) {
 					Emmet.reset();
+				} else if (EclipseUserData.isUserDataPreference(event.getProperty())) {
+					// template stores and output profiles are saved into
+					// preferences: apply changes without re-creating engine
+					updateJob.start();
 				}
 			}
 		});
@@ -53,6 +61,8 @@ public class EclipseEmmetPlugin extends AbstractUIPlugin {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		Emmet.dispose();
+		ExtensionCache.dispose();
 		plugin = null;
 		super.stop(context);
 	}
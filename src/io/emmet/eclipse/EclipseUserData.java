@@ -2,37 +2,59 @@ package io.emmet.eclipse;
 
 import io.emmet.IUserData;
 import io.emmet.Emmet;
+import io.emmet.Checksum;
+import io.emmet.ExtensionCache;
 import io.emmet.eclipse.preferences.PreferenceConstants;
 import io.emmet.eclipse.preferences.TemplateHelper;
 import io.emmet.eclipse.preferences.output.OutputProfile;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.templates.Template;
 import org.eclipse.jface.text.templates.persistence.TemplateStore;
 
-
-import com.google.gson.Gson;
-
 public class EclipseUserData implements IUserData {
+	private static String[] templateTypes = {"variables", "snippets", "abbreviations"};
+	
+	private static String[] profilePreferences = {
+		PreferenceConstants.P_PROFILE_TAG_CASE,
+		PreferenceConstants.P_PROFILE_ATTR_CASE,
+		PreferenceConstants.P_PROFILE_ATTR_QUOTES,
+		PreferenceConstants.P_PROFILE_TAG_NEWLINE,
+		PreferenceConstants.P_PROFILE_PLACE_CURSOR,
+		PreferenceConstants.P_PROFILE_INDENT,
+		PreferenceConstants.P_PROFILE_INLINE_BREAK,
+		PreferenceConstants.P_PROFILE_SELF_CLOSING_TAG,
+		PreferenceConstants.P_FILTERS
+	};
+	
+	/**
+	 * User data that was passed to engine last time, used for computing
+	 * changes on update
+	 */
+	private LinkedHashMap<String, Object> loadedData;
+	
+	/**
+	 * User data passed to engine by last <code>load()</code> call. Unlike
+	 * <code>loadedData</code>, it's not changed by updates, so fingerprint
+	 * always describes data that engine was created with
+	 */
+	private LinkedHashMap<String, Object> initialData;
 
 	@Override
 	public void load(Emmet ctx) {
-		// since JSON with variable data types and fields in Java is pretty hard, 
-		// we will collect user data into a simple hash array and then convert to
-		// desired structure in JS
-		HashMap<String, Object> userData = new HashMap<String, Object>();
-		userData.put("variables", getTemplates("variables"));
-		userData.put("snippets", getTemplates("snippets"));
-		userData.put("abbreviations", getTemplates("abbreviations"));
-		userData.put("profiles", OutputProfile.allProfiles());
-		
-		Gson gson = new Gson();
-		String payload = gson.toJson(userData);
-		ctx.execJSFunction("javaLoadUserData", payload);
+		LinkedHashMap<String, Object> userData = getUserData();
+		synchronized (this) {
+			loadedData = userData;
+			initialData = userData;
+		}
+		ctx.execJSFunction("javaLoadUserData", userData);
 	}
 	
 	/**
@@ -42,24 +64,182 @@ public class EclipseUserData implements IUserData {
 	 */
 	@Override
 	public void loadExtensions(Emmet ctx) {
+		ArrayList<File> extFiles = getExtensionFiles();
+		if (extFiles != null) {
+			ctx.loadExtensions(extFiles);
+		}
+	}
+	
+	@Override
+	public String getFingerprint() {
+		LinkedHashMap<String, Object> userData;
+		synchronized (this) {
+			userData = initialData;
+		}
+		
+		StringBuilder fingerprint = new StringBuilder(Checksum.hash(String.valueOf(userData)));
+		ArrayList<File> extFiles = getExtensionFiles();
+		if (extFiles != null) {
+			for (File file : extFiles) {
+				try {
+					fingerprint.append(':').append(ExtensionCache.getDefault().getHash(file));
+				} catch (IOException e) {
+					fingerprint.append(':').append(file.length()).append('/').append(file.lastModified());
+				}
+			}
+		}
+		
+		return fingerprint.toString();
+	}
+	
+	/**
+	 * Compares current user templates and output profiles with the ones 
+	 * that were passed to engine last time and applies changes to live
+	 * engines. Does nothing if engine wasn't created yet
+	 */
+	public void update() {
+		LinkedHashMap<String, Object> userData = getUserData();
+		LinkedHashMap<String, Object> delta = null;
+		synchronized (this) {
+			if (loadedData != null) {
+				delta = diff(loadedData, userData);
+			}
+			loadedData = userData;
+		}
+		
+		if (delta != null && !delta.isEmpty()) {
+			Emmet.updateUserData(delta);
+		}
+	}
+	
+	/**
+	 * Check if preference with given name holds user data: templates 
+	 * (stored by template stores) or output profile options
+	 */
+	public static boolean isUserDataPreference(String name) {
+		if (name.startsWith(TemplateHelper.CUSTOM_TEMPLATES_KEY))
+			return true;
+		
+		for (String pref : profilePreferences) {
+			if (name.startsWith(pref + "_"))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns changed items of user data. Templates are compared by syntax
+	 * and name, removed templates are added with <code>null</code> value;
+	 * changed profiles are added as a whole
+	 */
+	@SuppressWarnings("unchecked")
+	private static LinkedHashMap<String, Object> diff(LinkedHashMap<String, Object> prev, LinkedHashMap<String, Object> cur) {
+		LinkedHashMap<String, Object> delta = new LinkedHashMap<String, Object>();
+		for (String type : templateTypes) {
+			ArrayList<ArrayList<String>> changed = diffTemplates(
+					(ArrayList<ArrayList<String>>) prev.get(type),
+					(ArrayList<ArrayList<String>>) cur.get(type));
+			if (!changed.isEmpty()) {
+				delta.put(type, changed);
+			}
+		}
+		
+		Map<String, Object> prevProfiles = (Map<String, Object>) prev.get("profiles");
+		Map<String, Object> curProfiles = (Map<String, Object>) cur.get("profiles");
+		LinkedHashMap<String, Object> changedProfiles = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : curProfiles.entrySet()) {
+			if (!entry.getValue().equals(prevProfiles.get(entry.getKey()))) {
+				changedProfiles.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		if (!changedProfiles.isEmpty()) {
+			delta.put("profiles", changedProfiles);
+		}
+		
+		return delta;
+	}
+	
+	private static ArrayList<ArrayList<String>> diffTemplates(ArrayList<ArrayList<String>> prev, ArrayList<ArrayList<String>> cur) {
+		LinkedHashMap<List<String>, String> prevItems = templatesMap(prev);
+		LinkedHashMap<List<String>, String> curItems = templatesMap(cur);
+		ArrayList<ArrayList<String>> changed = new ArrayList<ArrayList<String>>();
+		
+		for (Map.Entry<List<String>, String> entry : curItems.entrySet()) {
+			String value = entry.getValue();
+			if (!prevItems.containsKey(entry.getKey()) || !value.equals(prevItems.get(entry.getKey()))) {
+				ArrayList<String> item = new ArrayList<String>(entry.getKey());
+				item.add(value);
+				changed.add(item);
+			}
+		}
+		
+		for (List<String> key : prevItems.keySet()) {
+			if (!curItems.containsKey(key)) {
+				ArrayList<String> item = new ArrayList<String>(key);
+				item.add(null);
+				changed.add(item);
+			}
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Converts list of templates into map, keyed by template syntax and name
+	 */
+	private static LinkedHashMap<List<String>, String> templatesMap(ArrayList<ArrayList<String>> templates) {
+		LinkedHashMap<List<String>, String> map = new LinkedHashMap<List<String>, String>();
+		for (ArrayList<String> item : templates) {
+			map.put(item.subList(0, item.size() - 1), item.get(item.size() - 1));
+		}
+		return map;
+	}
+	
+	/**
+	 * Returns user templates and output profiles. Engine receives this 
+	 * data as native JS objects and converts it to desired structure
+	 */
+	private LinkedHashMap<String, Object> getUserData() {
+		LinkedHashMap<String, Object> userData = new LinkedHashMap<String, Object>();
+		for (String type : templateTypes) {
+			userData.put(type, getTemplates(type));
+		}
+		
+		LinkedHashMap<String, Object> profiles = new LinkedHashMap<String, Object>();
+		for (String syntax : OutputProfile.syntaxes) {
+			profiles.put(syntax, OutputProfile.createFromPreferences(syntax).toMap());
+		}
+		userData.put("profiles", profiles);
+		
+		return userData;
+	}
+	
+	/**
+	 * Returns list of files in extensions folder or <code>null</code> if 
+	 * folder is not set
+	 */
+	private ArrayList<File> getExtensionFiles() {
 		IPreferenceStore store = EclipseEmmetPlugin.getDefault().getPreferenceStore();
 		String extensionsPath = store.getString(PreferenceConstants.P_EXTENSIONS_PATH);
 		if (extensionsPath != null && extensionsPath.length() > 0) {
 			File extDir = new File(extensionsPath);
 			if (extDir.exists() && extDir.isDirectory()) {
 				File[] files = extDir.listFiles();
-				ArrayList<String> extFiles = new ArrayList<String>();
+				ArrayList<File> extFiles = new ArrayList<File>();
 				
 				try {
 					for (File f : files) {
-						extFiles.add(f.getCanonicalPath());
+						extFiles.add(f.getCanonicalFile());
 					}
 				} catch (Exception e) {}
 				
-				Gson gson = new Gson();
-				ctx.execJSFunction("javaLoadExtensions", gson.toJson(extFiles));
+				return extFiles;
 			}
 		}
+		
+		return null;
 	}
 	
 	private ArrayList<ArrayList<String>> getTemplates(String type) {
@@ -0,0 +1,157 @@
+package io.emmet.eclipse;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.swt.custom.VerifyKeyListener;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * Registry of editors with installed Tab key listener. Editors are
+ * compared by identity and referenced weakly: editors closed without
+ * <code>partClosed</code> notification (like pages of multipage editors)
+ * are removed from registry when they are garbage collected or when their
+ * text widget is disposed
+ * @author sergey
+ *
+ */
+public class EditorRegistry {
+	private HashMap<Key, Registration> entries = new HashMap<Key, Registration>();
+	private ReferenceQueue<ITextEditor> queue = new ReferenceQueue<ITextEditor>();
+
+	/**
+	 * Per-editor state. Registration doesn't reference editor or its
+	 * viewer strongly, otherwise editor will never be collected
+	 */
+	public static class Registration {
+		private Key key;
+		private WeakReference<ITextViewer> viewer;
+		private VerifyKeyListener listener;
+		private DisposeListener disposeListener;
+
+		private Registration(Key key, ITextViewer viewer, VerifyKeyListener listener) {
+			this.key = key;
+			this.viewer = new WeakReference<ITextViewer>(viewer);
+			this.listener = listener;
+		}
+
+		public ITextEditor getEditor() {
+			return key.get();
+		}
+
+		/**
+		 * Returns text viewer of editor, <code>null</code> if it was
+		 * collected
+		 */
+		public ITextViewer getViewer() {
+			return viewer.get();
+		}
+
+		public VerifyKeyListener getListener() {
+			return listener;
+		}
+
+		/**
+		 * Returns listener that removes registration when editor widget
+		 * is disposed, <code>null</code> if it's not installed
+		 */
+		public DisposeListener getDisposeListener() {
+			return disposeListener;
+		}
+
+		void setDisposeListener(DisposeListener disposeListener) {
+			this.disposeListener = disposeListener;
+		}
+	}
+
+	/**
+	 * Weak reference that uses referent identity for hash map lookups
+	 */
+	private static class Key extends WeakReference<ITextEditor> {
+		private int hash;
+
+		Key(ITextEditor editor, ReferenceQueue<ITextEditor> queue) {
+			super(editor, queue);
+			hash = System.identityHashCode(editor);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+
+			Object editor = get();
+			return editor != null && editor == ((Key) obj).get();
+		}
+	}
+
+	/**
+	 * Returns registration of given editor, <code>null</code> if editor
+	 * is not registered
+	 */
+	public synchronized Registration get(ITextEditor editor) {
+		expunge();
+		return entries.get(new Key(editor, null));
+	}
+
+	/**
+	 * Registers editor with its text viewer and installed key listener
+	 */
+	public synchronized Registration register(ITextEditor editor, ITextViewer viewer, VerifyKeyListener listener) {
+		expunge();
+		Key key = new Key(editor, queue);
+		Registration reg = new Registration(key, viewer, listener);
+		entries.put(key, reg);
+		return reg;
+	}
+
+	/**
+	 * Removes given editor from registry
+	 * @return Removed registration, <code>null</code> if editor was not
+	 * registered
+	 */
+	public synchronized Registration remove(ITextEditor editor) {
+		expunge();
+		return entries.remove(new Key(editor, null));
+	}
+
+	/**
+	 * Removes registration, if it's still in registry. Used when editor
+	 * widget is disposed and editor may be already collected
+	 */
+	public synchronized void remove(Registration reg) {
+		if (entries.get(reg.key) == reg) {
+			entries.remove(reg.key);
+		}
+		expunge();
+	}
+
+	/**
+	 * Returns number of live registrations
+	 */
+	public synchronized int size() {
+		expunge();
+		return entries.size();
+	}
+
+	/**
+	 * Removes entries of collected editors
+	 */
+	private void expunge() {
+		Reference<? extends ITextEditor> ref;
+		while ((ref = queue.poll()) != null) {
+			entries.remove(ref);
+		}
+	}
+}
@@ -5,7 +5,6 @@ import java.lang.reflect.Method;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.ui.IEditorPart;
-import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 
@@ -31,39 +30,50 @@ public class EditorTypeInvestigator {
 	}
 	
 	/**
-	 * Returns current editor's syntax mode
+	 * Returns current editor's syntax mode. Detected syntaxes are cached
+	 * per document partition, see {@link SyntaxCache}
 	 */
 	public static String getSyntax(EclipseEmmetEditor editor) {
+		IDocument doc = editor.getDocument();
+		IEditorPart ed = editor.getEditor();
+		String className = ed.getSite().getId().toLowerCase();
+		int caretPos = editor.getCaretPos();
+		
+		SyntaxCache cache = SyntaxCache.get(doc, className);
+		if (cache.contains(caretPos)) {
+			return cache.get(caretPos);
+		}
+		
 		String result = null;
 		
-		IDocument doc = editor.getDocument();
-		String className = PlatformUI.getWorkbench().getActiveWorkbenchWindow()
-				.getActivePage().getActiveEditor().getSite().getId().toLowerCase();
+		// range of document where detected syntax is valid
+		int start = -1, end = Integer.MAX_VALUE;
 		
 		// try to get current partition (true Eclipse)
 		try {
-			ITypedRegion[] regions = doc.computePartitioning(editor.getCaretPos(), 0);
+			ITypedRegion[] regions = doc.computePartitioning(caretPos, 0);
 			if (regions.length > 0) {
 				result = guessSyntaxFromString(regions[0].getType());
+				start = regions[0].getOffset();
+				end = start + regions[0].getLength();
 			}
 		} catch (Exception e) {	}
 		
 		if (result == null) {
 			// try Aptana 2 way
-			IEditorPart ed = editor.getEditor();
 			if (ed instanceof ITextEditor) {
-				Class<? extends IEditorPart> editorClass = ed.getClass();
-				try {
-					Method getFileContext = editorClass.getMethod("getFileContext", new Class[]{});
-					Object fileContext = getFileContext.invoke(ed);
-					if (fileContext != null) {
-						Class<? extends Object> fcClass = fileContext.getClass();
-						Method getPartition = fcClass.getMethod("getPartitionAtOffset", new Class[]{Integer.TYPE});
-						ITypedRegion region = (ITypedRegion) getPartition.invoke(fileContext, new Object[]{editor.getCaretPos()});
-						result = guessSyntaxFromString(region.getType());
+				Object fileContext = ReflectionCache.invoke(ed, "getFileContext");
+				if (fileContext != null) {
+					Method getPartition = ReflectionCache.getMethod(fileContext.getClass(), "getPartitionAtOffset", Integer.TYPE);
+					if (getPartition != null) {
+						try {
+							ITypedRegion region = (ITypedRegion) getPartition.invoke(fileContext, new Object[]{caretPos});
+							result = guessSyntaxFromString(region.getType());
+							start = Math.max(start, region.getOffset());
+							end = Math.min(end, region.getOffset() + region.getLength());
+						} catch (Exception e) {  }
 					}
-					
-				} catch (Exception e) {  }
+				}
 			}
 		}
 		
@@ -79,6 +89,7 @@ public class EditorTypeInvestigator {
 		if (result == TYPE_XML && guessSyntaxFromString(className) == TYPE_XSL)
 			result = TYPE_XSL;
 		
+		cache.put(caretPos, start, end, result);
 		return result;
 	}
 
@@ -106,7 +117,13 @@ public class EditorTypeInvestigator {
 	 * Returns current output profile name
 	 */
 	public static String getOutputProfile(EclipseEmmetEditor editor) {
-		String syntax = getSyntax(editor);
+		return getOutputProfile(getSyntax(editor));
+	}
+	
+	/**
+	 * Returns output profile name for given syntax
+	 */
+	public static String getOutputProfile(String syntax) {
 		if (syntax != null) {
 			if (syntax.equals(TYPE_XML) || syntax.equals(TYPE_XSL))
 				return PROFILE_XML;
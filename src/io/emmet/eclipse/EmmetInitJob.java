@@ -0,0 +1,53 @@
+package io.emmet.eclipse;
+
+import io.emmet.Emmet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Background job that initializes Emmet engine so the first action 
+ * (usually Tab key press) doesn't block UI thread. Until the engine is
+ * ready, key handlers should fall back to default editor behavior
+ */
+public class EmmetInitJob extends Job {
+	private static EmmetInitJob instance;
+
+	private EmmetInitJob() {
+		super("Initializing Emmet");
+		setSystem(true);
+		setPriority(Job.SHORT);
+	}
+	
+	/**
+	 * Schedules engine initialization, if it's not initialized or 
+	 * scheduled yet
+	 */
+	public static synchronized void start() {
+		if (Emmet.isReady())
+			return;
+		
+		if (instance == null)
+			instance = new EmmetInitJob();
+		
+		if (instance.getState() == Job.NONE)
+			instance.schedule();
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			Emmet engine = Emmet.getSingleton();
+			EclipseEmmetPlugin.getDefault().getLog().log(new Status(IStatus.INFO, 
+					EclipseEmmetPlugin.PLUGIN_ID, 
+					"Emmet engine initialized in " + engine.getInitTime() + " ms"));
+		} catch (Exception e) {
+			return new Status(IStatus.ERROR, EclipseEmmetPlugin.PLUGIN_ID, 
+					"Unable to initialize Emmet engine", e);
+		}
+		
+		return Status.OK_STATUS;
+	}
+}
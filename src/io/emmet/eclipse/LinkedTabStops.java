@@ -0,0 +1,283 @@
+package io.emmet.eclipse;
+
+import io.emmet.TabStopStructure;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.link.ILinkedModeListener;
+import org.eclipse.jface.text.link.LinkedModeModel;
+import org.eclipse.jface.text.link.LinkedModeUI;
+import org.eclipse.jface.text.link.LinkedPosition;
+import org.eclipse.jface.text.link.LinkedPositionGroup;
+import org.eclipse.swt.custom.StyledText;
+
+/**
+ * Links tabstops of expanded abbreviation in editor. Every linked position
+ * is updated on each keystroke, so large expansions with thousands of
+ * tabstops are linked in batches: only first tabstops (up to
+ * <code>emmet.linkedPositionsLimit</code> positions) are installed in
+ * linked mode, the rest are kept as plain offsets. When user tabs past
+ * the last linked position, next batch is installed. Document changes are
+ * only logged while tabstops are pending and applied to offsets of next
+ * batch when it's installed.
+ * <br><br>
+ * Caret groups are not mirrored, so they are split between batches.
+ * Other groups are linked whole, otherwise their positions won't be
+ * mirrored: a batch may exceed the limit only if it consists of a single
+ * group that is larger than the limit
+ * @author sergey
+ *
+ */
+public class LinkedTabStops implements IDocumentListener, ILinkedModeListener {
+	private static int maxPositions = Math.max(1, Integer.getInteger("emmet.linkedPositionsLimit", 100));
+
+	private ITextViewer viewer;
+	private IDocument doc;
+	private boolean simpleMode;
+
+	/**
+	 * Absolute tabstop offsets, grouped in tabstop group order
+	 */
+	private int[] starts;
+	private int[] ends;
+	private int[] groupOffsets;
+	private boolean[] caretGroups;
+	private int groupCount;
+
+	/**
+	 * First group that is not linked yet and its first tabstop that is
+	 * not linked yet (index in <code>starts</code>)
+	 */
+	private int nextGroup = 0;
+	private int nextStop = 0;
+
+	/**
+	 * Document changes since last batch was installed: offset, length
+	 * and replacement length of each change
+	 */
+	private int[] changes = new int[24];
+	private int changeCount = 0;
+
+	/**
+	 * @param viewer Text viewer where tabstops should be linked
+	 * @param tabStops Tabstops of inserted text
+	 * @param offset Document offset of inserted text
+	 * @param simpleMode Use simple linked mode UI
+	 */
+	public LinkedTabStops(ITextViewer viewer, TabStopStructure tabStops, int offset, boolean simpleMode) {
+		this.viewer = viewer;
+		this.doc = viewer.getDocument();
+		this.simpleMode = simpleMode;
+
+		groupCount = tabStops.getGroupCount();
+		groupOffsets = new int[groupCount + 1];
+		caretGroups = new boolean[groupCount];
+		starts = new int[tabStops.getTabStopsCount()];
+		ends = new int[starts.length];
+
+		int ix = 0;
+		for (int i = 0; i < groupCount; i++) {
+			groupOffsets[i] = ix;
+			caretGroups[i] = tabStops.isCaretGroup(i);
+			for (int j = 0; j < tabStops.getGroupSize(i); j++, ix++) {
+				starts[ix] = offset + tabStops.getStart(i, j);
+				ends[ix] = offset + tabStops.getEnd(i, j);
+			}
+		}
+
+		groupOffsets[groupCount] = ix;
+	}
+
+	/**
+	 * Installs linked mode for next batch of tabstop groups
+	 * @throws BadLocationException
+	 */
+	public void link() throws BadLocationException {
+		applyChanges();
+
+		LinkedModeModel model = new LinkedModeModel();
+		int exitPos = -1;
+		int positions = 0;
+		int group = nextGroup;
+		int stop = nextStop;
+
+		while (group < groupCount && positions < maxPositions) {
+			int to = groupOffsets[group + 1];
+			if (caretGroups[group]) {
+				// each caret is a separate group: link as many as fit
+				for (; stop < to && positions < maxPositions; stop++, positions++) {
+					try {
+						addPositions(model, stop, stop + 1);
+						exitPos = starts[stop];
+					} catch (BadLocationException e) {
+						// tabstop was removed or overlapped by user edits
+						if (nextStop == 0)
+							throw e;
+					}
+				}
+			} else {
+				// link whole group, otherwise it won't be mirrored
+				if (positions > 0 && positions + to - stop > maxPositions)
+					break;
+
+				try {
+					addPositions(model, stop, to);
+				} catch (BadLocationException e) {
+					if (nextStop == 0)
+						throw e;
+				}
+
+				positions += to - stop;
+				stop = to;
+			}
+
+			if (stop == to)
+				group++;
+		}
+
+		nextGroup = group;
+		nextStop = stop;
+		if (nextGroup < groupCount) {
+			exitPos = starts[nextStop];
+			doc.addDocumentListener(this);
+			model.addLinkingListener(this);
+		} else {
+			doc.removeDocumentListener(this);
+		}
+
+		if (positions == 0)
+			return;
+
+		model.forceInstall();
+		LinkedModeUI linkUI = new LinkedModeUI(model, viewer);
+		if (exitPos != -1) {
+			linkUI.setExitPosition(viewer, exitPos, 0, Integer.MAX_VALUE);
+		}
+
+		linkUI.setSimpleMode(simpleMode);
+		linkUI.enter();
+	}
+
+	/**
+	 * Adds tabstops from <code>from</code> to <code>to</code> index as a
+	 * single linked position group
+	 * @throws BadLocationException
+	 */
+	private void addPositions(LinkedModeModel model, int from, int to) throws BadLocationException {
+		if (from == to)
+			return;
+
+		LinkedPositionGroup posGroup = new LinkedPositionGroup();
+		for (int i = from; i < to; i++) {
+			posGroup.addPosition(new LinkedPosition(doc, starts[i], ends[i] - starts[i]));
+		}
+		model.addGroup(posGroup);
+	}
+
+	/**
+	 * Shifts offsets of pending tabstops by logged document changes
+	 */
+	private void applyChanges() {
+		if (changeCount == 0)
+			return;
+
+		int docLength = doc.getLength();
+		for (int i = nextStop; i < starts.length; i++) {
+			int start = starts[i], end = ends[i];
+			for (int j = 0; j < changeCount; j += 3) {
+				start = shift(start, changes[j], changes[j + 1], changes[j + 2], false);
+				end = shift(end, changes[j], changes[j + 1], changes[j + 2], true);
+			}
+
+			starts[i] = Math.min(start, docLength);
+			ends[i] = Math.min(Math.max(start, end), docLength);
+		}
+
+		changeCount = 0;
+	}
+
+	/**
+	 * Returns offset after document change. Text inserted right at the
+	 * tabstop start or end is left outside of tabstop
+	 */
+	private static int shift(int pos, int offset, int length, int textLength, boolean isEnd) {
+		if (pos < offset || (isEnd && pos == offset && length == 0))
+			return pos;
+		if (pos >= offset + length)
+			return pos + textLength - length;
+
+		// position was inside replaced region
+		return isEnd ? offset + textLength : offset;
+	}
+
+	private void reset() {
+		doc.removeDocumentListener(this);
+		nextGroup = groupCount;
+		nextStop = starts.length;
+		changeCount = 0;
+	}
+
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent event) {
+
+	}
+
+	@Override
+	public void documentChanged(DocumentEvent event) {
+		if (changeCount + 3 > changes.length) {
+			int[] newChanges = new int[changes.length * 2];
+			System.arraycopy(changes, 0, newChanges, 0, changeCount);
+			changes = newChanges;
+		}
+
+		changes[changeCount++] = event.getOffset();
+		changes[changeCount++] = event.getLength();
+		changes[changeCount++] = event.getText() != null ? event.getText().length() : 0;
+	}
+
+	@Override
+	public void left(LinkedModeModel model, int flags) {
+		if ((flags & (ILinkedModeListener.EXIT_ALL | ILinkedModeListener.EXTERNAL_MODIFICATION)) != 0) {
+			// user left linked mode, pending tabstops are not needed anymore
+			reset();
+			return;
+		}
+
+		// linked mode is still being uninstalled here, install next batch
+		// once it's done
+		final StyledText widget = viewer.getTextWidget();
+		if (widget == null || widget.isDisposed()) {
+			reset();
+			return;
+		}
+
+		widget.getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (widget.isDisposed()) {
+					reset();
+					return;
+				}
+
+				try {
+					link();
+				} catch (BadLocationException e) {
+					reset();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void suspend(LinkedModeModel model) {
+
+	}
+
+	@Override
+	public void resume(LinkedModeModel model, int flags) {
+
+	}
+}
@@ -0,0 +1,119 @@
+package io.emmet.eclipse;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of reflective accessors used to reach editor internals, like
+ * source viewer of text editor or Aptana partitioning API. Members are
+ * resolved once per class; missing members are cached too, so editors
+ * that don't have them don't pay for failed lookups on every call
+ * @author sergey
+ *
+ */
+public class ReflectionCache {
+	/**
+	 * Stored for members that don't exist in class
+	 */
+	private static final Object MISSING = new Object();
+
+	/**
+	 * Classes are referenced weakly and members softly, since a member
+	 * strongly references its declaring class: this way editor classes
+	 * of uninstalled bundles can be unloaded along with their class
+	 * loaders. Cleared members are resolved again on next lookup
+	 */
+	private static Map<Class<?>, Map<String, Object>> members = new WeakHashMap<Class<?>, Map<String, Object>>();
+
+	/**
+	 * Returns public method of given class (see <code>Class.getMethod()</code>)
+	 * or <code>null</code> if it doesn't exist
+	 */
+	public static Method getMethod(Class<?> clazz, String name, Class<?>... paramTypes) {
+		StringBuilder key = new StringBuilder(name).append('(');
+		for (Class<?> type : paramTypes) {
+			key.append(type.getName()).append(',');
+		}
+		key.append(')');
+
+		Object member = lookup(clazz, key.toString());
+		if (member == null) {
+			try {
+				member = clazz.getMethod(name, paramTypes);
+			} catch (Exception e) {
+				member = MISSING;
+			}
+
+			store(clazz, key.toString(), member);
+		}
+
+		return member != MISSING ? (Method) member : null;
+	}
+
+	/**
+	 * Returns field declared in given class (see
+	 * <code>Class.getDeclaredField()</code>), made accessible, or
+	 * <code>null</code> if it doesn't exist or can't be accessed
+	 */
+	public static Field getDeclaredField(Class<?> clazz, String name) {
+		Object member = lookup(clazz, name);
+		if (member == null) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				field.setAccessible(true);
+				member = field;
+			} catch (Exception e) {
+				member = MISSING;
+			}
+
+			store(clazz, name, member);
+		}
+
+		return member != MISSING ? (Field) member : null;
+	}
+
+	/**
+	 * Invokes method without arguments on given object. Returns
+	 * <code>null</code> if object doesn't have such method or it fails
+	 */
+	public static Object invoke(Object obj, String name) {
+		Method method = getMethod(obj.getClass(), name);
+		if (method != null) {
+			try {
+				return method.invoke(obj);
+			} catch (Exception e) {	}
+		}
+
+		return null;
+	}
+
+	private static synchronized Object lookup(Class<?> clazz, String key) {
+		Map<String, Object> classMembers = members.get(clazz);
+		Object member = classMembers != null ? classMembers.get(key) : null;
+		if (member instanceof Reference) {
+			return ((Reference<?>) member).get();
+		}
+
+		return member;
+	}
+
+	private static synchronized void store(Class<?> clazz, String key, Object member) {
+		if (member instanceof Member) {
+			member = new SoftReference<Object>(member);
+		}
+
+		Map<String, Object> classMembers = members.get(clazz);
+		if (classMembers == null) {
+			classMembers = new HashMap<String, Object>();
+			members.put(clazz, classMembers);
+		}
+
+		classMembers.put(key, member);
+	}
+}
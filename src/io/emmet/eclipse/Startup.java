@@ -9,6 +9,9 @@ public class Startup implements IStartup {
 
 	@Override
 	public void earlyStartup() {
+		// warm up engine in background so first Tab press won't block UI
+		EmmetInitJob.start();
+		
 		final IWorkbench workbench = PlatformUI.getWorkbench();
 		workbench.getDisplay().asyncExec(new Runnable() {
 			public void run() {
@@ -0,0 +1,217 @@
+package io.emmet.eclipse;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+
+/**
+ * Cache of Emmet syntaxes detected in document partitions. Syntax
+ * detection computes document partitioning and, in Aptana, calls its
+ * partitioning API via reflection; cache stores ranges of partitions
+ * with resolved syntax, so repeated lookups near caret are a binary search.
+ * Cache is cleared when document is modified: modification stamp is used
+ * for documents that support it, document listener for the others
+ * @author sergey
+ *
+ */
+public class SyntaxCache implements IDocumentListener {
+	private static final int MAX_SIZE = 256;
+
+	/**
+	 * Value stored for ranges where syntax can't be detected
+	 */
+	private static final String UNKNOWN = "";
+
+	private static Map<IDocument, SyntaxCache> caches = new WeakHashMap<IDocument, SyntaxCache>();
+
+	private String editorId;
+	private long stamp;
+	private boolean modified = false;
+
+	/**
+	 * Sorted non-overlapping ranges: syntax is valid for offsets between
+	 * range start and end, exclusive, since offsets at partition bounds
+	 * may belong to either partition
+	 */
+	private int count = 0;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private String[] syntaxes = new String[16];
+
+	/**
+	 * Last looked up offset and its syntax
+	 */
+	private int lastOffset = -1;
+	private String lastSyntax;
+
+	private SyntaxCache(IDocument doc, String editorId) {
+		this.editorId = editorId;
+		this.stamp = getStamp(doc);
+		if (stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+			doc.addDocumentListener(this);
+		}
+	}
+
+	/**
+	 * Returns valid syntax cache for given document
+	 * @param doc Document
+	 * @param editorId Id of editor where document is opened: syntax may
+	 * be detected from editor id, so cache is cleared when the same
+	 * document is used in another editor
+	 */
+	public static synchronized SyntaxCache get(IDocument doc, String editorId) {
+		SyntaxCache cache = caches.get(doc);
+		if (cache == null) {
+			cache = new SyntaxCache(doc, editorId);
+			caches.put(doc, cache);
+		} else {
+			cache.validate(doc, editorId);
+		}
+
+		return cache;
+	}
+
+	private static long getStamp(IDocument doc) {
+		return doc instanceof IDocumentExtension4
+				? ((IDocumentExtension4) doc).getModificationStamp()
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	private synchronized void validate(IDocument doc, String editorId) {
+		long curStamp = getStamp(doc);
+		if (curStamp != stamp || modified || !this.editorId.equals(editorId)) {
+			clear();
+			stamp = curStamp;
+			this.editorId = editorId;
+		}
+	}
+
+	private void clear() {
+		count = 0;
+		lastOffset = -1;
+		lastSyntax = null;
+		modified = false;
+		for (int i = 0; i < syntaxes.length; i++) {
+			syntaxes[i] = null;
+		}
+	}
+
+	/**
+	 * Checks if syntax for given offset is cached
+	 */
+	public synchronized boolean contains(int offset) {
+		return offset == lastOffset || find(offset) != -1;
+	}
+
+	/**
+	 * Returns cached syntax for given offset. Result is <code>null</code>
+	 * if syntax can't be detected or isn't cached, use
+	 * <code>contains()</code> to check
+	 */
+	public synchronized String get(int offset) {
+		String syntax = null;
+		if (offset == lastOffset) {
+			syntax = lastSyntax;
+		} else {
+			int ix = find(offset);
+			if (ix != -1) {
+				syntax = syntaxes[ix];
+			}
+		}
+
+		return syntax != UNKNOWN ? syntax : null;
+	}
+
+	/**
+	 * Stores syntax detected for given offset
+	 * @param offset Looked up offset
+	 * @param start Start of range where syntax is valid
+	 * @param end End of range where syntax is valid
+	 * @param syntax Detected syntax, may be <code>null</code>
+	 */
+	public synchronized void put(int offset, int start, int end, String syntax) {
+		if (syntax == null) {
+			syntax = UNKNOWN;
+		}
+
+		lastOffset = offset;
+		lastSyntax = syntax;
+
+		if (end - start < 2) {
+			// there are no offsets inside range
+			return;
+		}
+
+		// find insertion point
+		int ix = 0;
+		while (ix < count && starts[ix] < start) {
+			ix++;
+		}
+		
+		if (ix < count && starts[ix] == start && ends[ix] == end) {
+			// range was looked up at its bound
+			syntaxes[ix] = syntax;
+			return;
+		}
+
+		if ((ix > 0 && ends[ix - 1] > start) || (ix < count && starts[ix] < end)) {
+			// overlaps existing range: partitioning was changed without
+			// document modification
+			clear();
+			lastOffset = offset;
+			lastSyntax = syntax;
+			ix = 0;
+		} else if (count == MAX_SIZE) {
+			return;
+		}
+
+		if (count == starts.length) {
+			int size = Math.min(count * 2, MAX_SIZE);
+			starts = Arrays.copyOf(starts, size);
+			ends = Arrays.copyOf(ends, size);
+			syntaxes = Arrays.copyOf(syntaxes, size);
+		}
+
+		System.arraycopy(starts, ix, starts, ix + 1, count - ix);
+		System.arraycopy(ends, ix, ends, ix + 1, count - ix);
+		System.arraycopy(syntaxes, ix, syntaxes, ix + 1, count - ix);
+		starts[ix] = start;
+		ends[ix] = end;
+		syntaxes[ix] = syntax;
+		count++;
+	}
+
+	/**
+	 * Returns index of range that contains given offset or -1
+	 */
+	private int find(int offset) {
+		int lo = 0, hi = count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ends[mid] <= offset) {
+				lo = mid + 1;
+			} else if (starts[mid] >= offset) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent event) {
+
+	}
+
+	@Override
+	public synchronized void documentChanged(DocumentEvent event) {
+		modified = true;
+	}
+}
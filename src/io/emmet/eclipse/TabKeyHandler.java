@@ -1,10 +1,12 @@
 package io.emmet.eclipse;
 
+import io.emmet.Emmet;
+import io.emmet.eclipse.EditorRegistry.Registration;
 import io.emmet.eclipse.handlers.ExpandAbbreviationAction;
 import io.emmet.eclipse.handlers.InsertFormattedLineBreakAction;
 import io.emmet.eclipse.preferences.PreferenceConstants;
 
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.text.IDocument;
@@ -12,6 +14,8 @@ import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.link.LinkedModeModel;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.custom.VerifyKeyListener;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.VerifyEvent;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IEditorReference;
@@ -29,8 +33,7 @@ import org.eclipse.ui.texteditor.ITextEditor;
  *
  */
 public class TabKeyHandler {
-	private static HashMap<Integer, ITextEditor> installedEditors = new HashMap<Integer, ITextEditor>();
-	private static HashMap<Integer, VerifyKeyListener> keyListeners = new HashMap<Integer, VerifyKeyListener>();
+	private static EditorRegistry registry = new EditorRegistry();
 	private static boolean inited = false;
 	private static boolean enabled = true;
 	
@@ -53,14 +56,23 @@ public class TabKeyHandler {
 		if (editor == null || !isEnabled()) 
 			return;
 		
-		Integer id = getEditorId(editor);
-		if (!installedEditors.containsKey(id)) {
+		if (registry.get(editor) == null) {
 			// install key listener for Tab key
 			try {
 				ITextViewer textViewer = EclipseEmmetHelper.getTextViewer(editor);
 				StyledText widget = textViewer.getTextWidget();
-				widget.addVerifyKeyListener(getKeyListener(editor));
-				installedEditors.put(id, editor);
+				VerifyKeyListener listener = createKeyListener(editor);
+				widget.addVerifyKeyListener(listener);
+				
+				final Registration reg = registry.register(editor, textViewer, listener);
+				DisposeListener disposeListener = new DisposeListener() {
+					@Override
+					public void widgetDisposed(DisposeEvent e) {
+						registry.remove(reg);
+					}
+				};
+				reg.setDisposeListener(disposeListener);
+				widget.addDisposeListener(disposeListener);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -75,13 +87,19 @@ public class TabKeyHandler {
 		if (editor == null)
 			return;
 		
-		Integer id = getEditorId(editor);
-		if (installedEditors.containsKey(id)) {
+		Registration reg = registry.remove(editor);
+		if (reg != null) {
 			try {
-				StyledText widget = EclipseEmmetHelper.getTextViewer(editor).getTextWidget();
-				widget.removeVerifyKeyListener(getKeyListener(editor));
-				installedEditors.remove(id);
-				keyListeners.remove(id);
+				ITextViewer textViewer = reg.getViewer();
+				if (textViewer == null)
+					textViewer = EclipseEmmetHelper.getTextViewer(editor);
+				
+				StyledText widget = textViewer.getTextWidget();
+				if (widget != null && !widget.isDisposed()) {
+					widget.removeVerifyKeyListener(reg.getListener());
+					if (reg.getDisposeListener() != null)
+						widget.removeDisposeListener(reg.getDisposeListener());
+				}
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -98,43 +116,54 @@ public class TabKeyHandler {
 	}
 	
 	/**
-	 * Returns unique editor ID
-	 * @param editor
-	 * @return
+	 * Returns number of editors with installed Tab key listener
 	 */
-	public static Integer getEditorId(ITextEditor editor) {
-		return editor.hashCode();
+	public static int getInstalledCount() {
+		return registry.size();
 	}
 	
-	public static VerifyKeyListener getKeyListener(final ITextEditor editor) {
-		Integer id = getEditorId(editor);
-		if (!keyListeners.containsKey(id)) {
-			keyListeners.put(id, new VerifyKeyListener() {
+	/**
+	 * Creates Tab key listener for given editor. Listener references
+	 * editor weakly, since it's stored in editor registry
+	 */
+	private static VerifyKeyListener createKeyListener(ITextEditor textEditor) {
+		final WeakReference<ITextEditor> editorRef = new WeakReference<ITextEditor>(textEditor);
+		return new VerifyKeyListener() {
+			
+			@Override
+			public void verifyKey(VerifyEvent event) {
+				ITextEditor editor = editorRef.get();
+				if (editor == null) {
+					return;
+				}
 				
-				@Override
-				public void verifyKey(VerifyEvent event) {
-					IDocument document = EclipseEmmetHelper.getDocument(editor);
-					if (document == null) {
-						return;
-					}
-					
-					if (LinkedModeModel.hasInstalledModel(document)) {
-						return;
-					}
-					
-					if (event.doit) {
-						if (event.keyCode == 9) { // Tab key
+				IDocument document = EclipseEmmetHelper.getDocument(editor);
+				if (document == null) {
+					return;
+				}
+				
+				if (LinkedModeModel.hasInstalledModel(document)) {
+					return;
+				}
+				
+				if (!Emmet.isReady()) {
+					// engine is not initialized yet: do not block UI,
+					// let editor handle key as usual
+					EmmetInitJob.start();
+					return;
+				}
+				
+				if (event.doit) {
+					if (event.keyCode == 9) { // Tab key
+						if (AbbreviationPrecheck.mayExpand(editor, document))
 							event.doit = !ExpandAbbreviationAction.expand();
-						} else if (event.keyCode == 13) { // Enter key
-							event.doit = !InsertFormattedLineBreakAction.execute();
-						}
+					} else if (event.keyCode == 13) { // Enter key
+						event.doit = !InsertFormattedLineBreakAction.execute();
 					}
-					
 				}
-			});
-		}
-		
-		return keyListeners.get(id);
+				
+			}
+		};
 	}
 	
 	/**
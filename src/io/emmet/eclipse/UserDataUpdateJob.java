@@ -0,0 +1,43 @@
+package io.emmet.eclipse;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Applies changes of user templates and output profiles to live Emmet 
+ * engines. Saving preferences usually changes a number of values at once,
+ * so the job is scheduled with a small delay to handle them in a single 
+ * update
+ */
+public class UserDataUpdateJob extends Job {
+	private static final long DELAY = 100;
+	private EclipseUserData userData;
+
+	public UserDataUpdateJob(EclipseUserData userData) {
+		super("Updating Emmet user data");
+		this.userData = userData;
+		setSystem(true);
+		setPriority(Job.SHORT);
+	}
+	
+	/**
+	 * Schedules update of user data
+	 */
+	public void start() {
+		schedule(DELAY);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			userData.update();
+		} catch (Exception e) {
+			return new Status(IStatus.ERROR, EclipseEmmetPlugin.PLUGIN_ID, 
+					"Unable to update Emmet user data", e);
+		}
+		
+		return Status.OK_STATUS;
+	}
+}
@@ -10,11 +10,9 @@ import org.eclipse.ui.IEditorPart;
 public class ActionRunner {
 	private volatile static ActionRunner singleton;
 	private EclipseEmmetEditor emmetEditor;
-	private Emmet js;
 
 	private ActionRunner() {
 		emmetEditor = new EclipseEmmetEditor();
-		js = Emmet.getSingleton();
 	}
 
 	public static ActionRunner getSingleton() {
@@ -37,10 +35,13 @@ public class ActionRunner {
 	public boolean run(String actionName) {
 		EclipseEmmetEditor editor = getEditor();
 		if (editor != null) {
+			editor.beginAction();
 			try {
-				return js.runAction(editor, actionName);
+				return Emmet.getSingleton().runAction(editor, actionName);
 			} catch (Exception e) {
 				e.printStackTrace();
+			} finally {
+				editor.endAction();
 			}
 		}
 		
@@ -37,6 +37,7 @@ public class ExpandAbbreviationAction extends AbstractHandler {
 		String profileName = "eclipse";
 		
 		if (editor != null) {
+			editor.beginAction();
 			try {
 				// force tab key handler installation
 				TabKeyHandler.install(editor.getEditor());
@@ -45,6 +46,8 @@ public class ExpandAbbreviationAction extends AbstractHandler {
 				return js.runAction(editor, "expand_abbreviation", editor.getSyntax(), profileName);
 			} catch (Exception e) {
 				e.printStackTrace();
+			} finally {
+				editor.endAction();
 			}
 			
 		}
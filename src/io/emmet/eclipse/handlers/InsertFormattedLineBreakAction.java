@@ -1,13 +1,16 @@
 package io.emmet.eclipse.handlers;
 
 import io.emmet.Emmet;
-import io.emmet.SelectionData;
 import io.emmet.eclipse.EclipseEmmetHelper;
 import io.emmet.eclipse.EclipseEmmetPlugin;
 import io.emmet.eclipse.EclipseEmmetEditor;
 import io.emmet.eclipse.EditorTypeInvestigator;
 import io.emmet.eclipse.preferences.PreferenceConstants;
 
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
 public class InsertFormattedLineBreakAction {
 
 	public static boolean execute() {
@@ -15,48 +18,99 @@ public class InsertFormattedLineBreakAction {
 		
 		EclipseEmmetEditor editor = ActionRunner.getSingleton().getEditor();
 		
-		if (editor != null && shouldHandle(editor)) {
+		if (editor != null) {
+			editor.beginAction();
 			try {
-				Boolean result = Emmet.getSingleton().runAction(editor, "insert_formatted_line_break_only");
-				if (!result) {
-					String curPadding = editor.getCurrentLinePadding();
-					String content = editor.getContent();
-					int caretPos = editor.getCaretPos();
-					int c_len = content.length();
-					String nl = editor.getNewline();
-					
-					String nextNl = editor.getDocument().getLineDelimiter( editor.getDocument().getLineOfOffset(caretPos) );
+				if (shouldHandle(editor)) {
+					boolean result = false;
+					if (isFormattedBreak(editor))
+						result = Emmet.getSingleton().runAction(editor, "insert_formatted_line_break_only");
 					
-					if (nextNl != null)
-						nl = nextNl;
+					if (!result)
+						result = insertPaddedBreak(editor);
 					
-					// check out next line padding
-					SelectionData lineRange = editor.getCurrentLineRange();
-					StringBuilder nextPadding = new StringBuilder();
-					
-					for (int i = lineRange.getEnd() + nl.length(); i < c_len; i++) {
-						char ch = content.charAt(i);
-						if (ch == ' ' || ch == '\t')
-							nextPadding.append(ch);
-						else 
-							break;
-					}
-						
-					if (nextPadding.length() > curPadding.length()) {
-						editor.replaceContent(nl + nextPadding.toString(), caretPos, caretPos, true);
-						result = true;
-					}
+					return result;
 				}
-				
-				return result;
 			} catch (Exception e) {
 				e.printStackTrace();
+			} finally {
+				editor.endAction();
 			}
 		}
 		
 		return false;
 	}
 	
+	/**
+	 * Checks if caret is at position where JS action inserts formatted
+	 * line break: between opening and closing tag in HTML-like syntaxes,
+	 * right after opening brace in CSS
+	 */
+	private static boolean isFormattedBreak(EclipseEmmetEditor editor) throws BadLocationException {
+		IDocument doc = editor.getDocument();
+		int caretPos = editor.getCaretPos();
+		if (caretPos == 0)
+			return false;
+		
+		String syntax = editor.getSyntax();
+		char prev = doc.getChar(caretPos - 1);
+		
+		if (syntax == EditorTypeInvestigator.TYPE_HTML 
+				|| syntax == EditorTypeInvestigator.TYPE_XML 
+				|| syntax == EditorTypeInvestigator.TYPE_XSL) {
+			return prev == '>' && caretPos + 2 <= doc.getLength() 
+				&& doc.get(caretPos, 2).equals("</");
+		}
+		
+		if (syntax == EditorTypeInvestigator.TYPE_CSS) {
+			return prev == '{';
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Inserts line break with next line padding, if next line is indented
+	 * deeper than current one. Reads current and next lines only
+	 * @return <code>true</code> if line break was inserted
+	 */
+	private static boolean insertPaddedBreak(EclipseEmmetEditor editor) throws BadLocationException {
+		IDocument doc = editor.getDocument();
+		int caretPos = editor.getCaretPos();
+		int line = doc.getLineOfOffset(caretPos);
+		if (line + 1 >= doc.getNumberOfLines())
+			return false;
+		
+		String nl = doc.getLineDelimiter(line);
+		if (nl == null)
+			nl = editor.getNewline();
+		
+		String curPadding = getPadding(doc, doc.getLineInformation(line));
+		String nextPadding = getPadding(doc, doc.getLineInformation(line + 1));
+		
+		if (nextPadding.length() > curPadding.length()) {
+			editor.replaceContent(nl + nextPadding, caretPos, caretPos, true);
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns leading whitespace of given line
+	 */
+	private static String getPadding(IDocument doc, IRegion line) throws BadLocationException {
+		int start = line.getOffset(), end = start + line.getLength(), i = start;
+		while (i < end) {
+			char ch = doc.getChar(i);
+			if (ch != ' ' && ch != '\t')
+				break;
+			i++;
+		}
+		
+		return doc.get(start, i - start);
+	}
+	
 	public static boolean isEnabled() {
 		return EclipseEmmetPlugin.getDefault().getPreferenceStore()
 			.getBoolean(PreferenceConstants.P_UPGRADE_EDITORS);
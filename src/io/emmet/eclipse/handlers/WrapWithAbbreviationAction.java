@@ -18,6 +18,8 @@ public class WrapWithAbbreviationAction extends AbstractHandler {
 		String profileName = "eclipse";
 		
 		if (editor != null) {
+			// wrap previews in prompt dialog are run in the same context
+			editor.beginAction();
 			try {
 				String abbr = editor.promptWrap("Enter abbreviation:");
 				
@@ -29,6 +31,8 @@ public class WrapWithAbbreviationAction extends AbstractHandler {
 				
 			} catch (Exception e) {
 				e.printStackTrace();
+			} finally {
+				editor.endAction();
 			}
 		}
 		
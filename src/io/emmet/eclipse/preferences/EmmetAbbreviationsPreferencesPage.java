@@ -1,6 +1,5 @@
 package io.emmet.eclipse.preferences;
 
-import io.emmet.Emmet;
 import io.emmet.eclipse.EclipseEmmetPlugin;
 
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -26,16 +25,4 @@ public class EmmetAbbreviationsPreferencesPage extends TemplatePreferencePage im
 	protected boolean isShowFormatterSetting() {
 		return false;
 	}
-
-	@Override
-	public boolean performOk() {
-		Emmet.reset();
-		return super.performOk();
-	}
-	
-	@Override
-	protected void performDefaults() {
-		Emmet.reset();
-		super.performDefaults();
-	}
-}
\ No newline at end of file
+}
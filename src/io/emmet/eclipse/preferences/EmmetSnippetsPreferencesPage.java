@@ -1,6 +1,5 @@
 package io.emmet.eclipse.preferences;
 
-import io.emmet.Emmet;
 import io.emmet.eclipse.EclipseEmmetPlugin;
 
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -21,16 +20,4 @@ public class EmmetSnippetsPreferencesPage extends TemplatePreferencePage
 	protected boolean isShowFormatterSetting() {
 		return false;
 	}
-
-	@Override
-	public boolean performOk() {
-		Emmet.reset();
-		return super.performOk();
-	}
-	
-	@Override
-	protected void performDefaults() {
-		Emmet.reset();
-		super.performDefaults();
-	}
 }
@@ -1,6 +1,5 @@
 package io.emmet.eclipse.preferences;
 
-import io.emmet.Emmet;
 import io.emmet.eclipse.EclipseEmmetPlugin;
 
 import org.eclipse.ui.IWorkbenchPreferencePage;
@@ -14,16 +13,4 @@ public class EmmetVariablesPreferencePage extends VariablePreferencePage
         setTemplateStore(TemplateHelper.getVariableStore());
         setDescription("Variables for Emmet");
 	}
-	
-	@Override
-	public boolean performOk() {
-		Emmet.reset();
-		return super.performOk();
-	}
-	
-	@Override
-	protected void performDefaults() {
-		Emmet.reset();
-		super.performDefaults();
-	}
 }
@@ -1,6 +1,5 @@
 package io.emmet.eclipse.preferences.output;
 
-import io.emmet.Emmet;
 import io.emmet.eclipse.EclipseEmmetPlugin;
 import io.emmet.eclipse.preferences.PreferenceConstants;
 import io.emmet.eclipse.preferences.PreferenceInitializer;
@@ -124,16 +123,4 @@ public class DefaultOutputPreferencePage extends FieldEditorPreferencePage
 	public String getPrefSuffix() {
 		return prefSuffix;
 	}
-	
-	@Override
-	public boolean performOk() {
-		Emmet.reset();
-		return super.performOk();
-	}
-	
-	@Override
-	protected void performDefaults() {
-		Emmet.reset();
-		super.performDefaults();
-	}
 }
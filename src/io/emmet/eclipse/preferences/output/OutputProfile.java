@@ -5,6 +5,7 @@ import io.emmet.eclipse.preferences.PreferenceConstants;
 import io.emmet.eclipse.preferences.PreferenceInitializer;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 
@@ -138,4 +139,21 @@ public class OutputProfile {
 	public String getFilters() {
 		return filters;
 	}
+	
+	/**
+	 * Returns profile options as a map, keyed by field names
+	 */
+	public LinkedHashMap<String, Object> toMap() {
+		LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("tagCase", tagCase);
+		map.put("attrCase", attrCase);
+		map.put("attrQuotes", attrQuotes);
+		map.put("tagNewline", tagNewline);
+		map.put("placeCaret", placeCaret);
+		map.put("indentTags", indentTags);
+		map.put("inlineBreak", inlineBreak);
+		map.put("selfClosing", selfClosing);
+		map.put("filters", filters);
+		return map;
+	}
 }
@@ -2422,762 +2422,6 @@ emmet.exec(function(require, _) {
 	}
 	
 	require('abbreviationParser').addPostprocessor(resolveNodeNames);
-});/**
- * @author Stoyan Stefanov
- * @link https://github.com/stoyan/etc/tree/master/cssex
- */
-
-emmet.define('cssParser', function(require, _) {
-var walker, tokens = [], isOp, isNameChar, isDigit;
-    
-    // walks around the source
-    walker = {
-        lines: null,
-        total_lines: 0,
-        linenum: -1,
-        line: '',
-        ch: '',
-        chnum: -1,
-        init: function (source) {
-            var me = walker;
-        
-            // source, yumm
-            me.lines = source
-                .replace(/\r\n/g, '\n')
-                .replace(/\r/g, '\n')
-                .split('\n');
-            me.total_lines = me.lines.length;
-        
-            // reset
-            me.chnum = -1;
-            me.linenum = -1;
-            me.ch = '';
-            me.line = '';
-        
-            // advance
-            me.nextLine();
-            me.nextChar();
-        },
-        nextLine: function () {
-            var me = this;
-            me.linenum += 1;
-            if (me.total_lines <= me.linenum) {
-                me.line = false;
-            } else {
-                me.line = me.lines[me.linenum];
-            }
-            if (me.chnum !== -1) {
-                me.chnum = 0;
-            }
-            return me.line;
-        }, 
-        nextChar: function () {
-            var me = this;
-            me.chnum += 1;
-            while (me.line.charAt(me.chnum) === '') {
-                if (this.nextLine() === false) {
-                    me.ch = false;
-                    return false; // end of source
-                }
-                me.chnum = -1;
-                me.ch = '\n';
-                return '\n';
-            }
-            me.ch = me.line.charAt(me.chnum);
-            return me.ch;
-        },
-        peek: function() {
-            return this.line.charAt(this.chnum + 1);
-        }
-    };
-
-    // utility helpers
-    isNameChar = function (c) {
-        return (c === '_' || c === '-' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'));
-    };
-
-    isDigit = function (ch) {
-        return (ch !== false && ch >= '0' && ch <= '9');
-    };  
-
-    isOp = (function () {
-        var opsa = "{}[]()+*=.,;:>~|\\%$#@^!".split(''),
-            opsmatcha = "*^|$~".split(''),
-            ops = {},
-            opsmatch = {},
-            i = 0;
-        for (; i < opsa.length; i += 1) {
-            ops[opsa[i]] = true;
-        }
-        for (i = 0; i < opsmatcha.length; i += 1) {
-            opsmatch[opsmatcha[i]] = true;
-        }
-        return function (ch, matchattr) {
-            if (matchattr) {
-                return !!opsmatch[ch];
-            }
-            return !!ops[ch];
-        };
-    }());
-    
-    // shorthands
-    function isset(v) {
-        return typeof v !== 'undefined';
-    }
-    function getConf() {
-        return {
-            'char': walker.chnum,
-            line: walker.linenum
-        };
-    }
-
-
-    // creates token objects and pushes them to a list
-    function tokener(value, type, conf) {
-        var w = walker, c = conf || {};
-        tokens.push({
-            charstart: isset(c['char']) ? c['char'] : w.chnum,
-            charend:   isset(c.charend) ? c.charend : w.chnum,
-            linestart: isset(c.line)    ? c.line    : w.linenum,
-            lineend:   isset(c.lineend) ? c.lineend : w.linenum,
-            value:     value,
-            type:      type || value
-        });
-    }
-    
-    // oops
-    function error(m, config) { 
-        var w = walker,
-            conf = config || {},
-            c = isset(conf['char']) ? conf['char'] : w.chnum,
-            l = isset(conf.line) ? conf.line : w.linenum;
-        return {
-            name: "ParseError",
-            message: m + " at line " + (l + 1) + ' char ' + (c + 1),
-            walker: w,
-            tokens: tokens
-        };
-    }
-
-
-    // token handlers follow for:
-    // white space, comment, string, identifier, number, operator
-    function white() {
-    
-        var c = walker.ch,
-            token = '',
-            conf = getConf();
-    
-        while (c === " " || c === "\t") {
-            token += c;
-            c = walker.nextChar();
-        }
-    
-        tokener(token, 'white', conf);
-    
-    }
-
-    function comment() {
-    
-        var w = walker,
-            c = w.ch,
-            token = c,
-            cnext,
-            conf = getConf();    
-     
-        cnext = w.nextChar();
-        
-        if (cnext !== '*') {
-            // oops, not a comment, just a /
-            conf.charend = conf['char'];
-            conf.lineend = conf.line;
-            return tokener(token, token, conf);
-        }
-    
-        while (!(c === "*" && cnext === "/")) {
-            token += cnext;
-            c = cnext;
-            cnext = w.nextChar();        
-        }
-        token += cnext;
-        w.nextChar();
-        tokener(token, 'comment', conf);
-    }
-
-    function str() {
-        var w = walker,
-            c = w.ch,
-            q = c,
-            token = c,
-            cnext,
-            conf = getConf();
-    
-        c = w.nextChar();
-    
-        while (c !== q) {
-            
-            if (c === '\n') {
-                cnext = w.nextChar();
-                if (cnext === "\\") {
-                    token += c + cnext;
-                } else {
-                    // end of line with no \ escape = bad
-                    throw error("Unterminated string", conf);
-                }
-            } else {
-                if (c === "\\") {
-                    token += c + w.nextChar();
-                } else {
-                    token += c;
-                }
-            }
-        
-            c = w.nextChar();
-        
-        }
-        token += c;
-        w.nextChar();
-        tokener(token, 'string', conf);
-    }
-    
-    function brace() {
-        var w = walker,
-            c = w.ch,
-            depth = 0,
-            token = c,
-            conf = getConf();
-    
-        c = w.nextChar();
-    
-        while (c !== ')' && !depth) {
-        	if (c === '(') {
-        		depth++;
-        	} else if (c === ')') {
-        		depth--;
-        	} else if (c === false) {
-        		throw error("Unterminated brace", conf);
-        	}
-        	
-        	token += c;
-            c = w.nextChar();
-        }
-        
-        token += c;
-        w.nextChar();
-        tokener(token, 'brace', conf);
-    }
-
-    function identifier(pre) {
-        var w = walker,
-            c = w.ch,
-            conf = getConf(),
-            token = (pre) ? pre + c : c;
-            
-        c = w.nextChar();
-    
-        if (pre) { // adjust token position
-        	conf['char'] -= pre.length;
-        }
-        
-        while (isNameChar(c) || isDigit(c)) {
-            token += c;
-            c = w.nextChar();
-        }
-    
-        tokener(token, 'identifier', conf);    
-    }
-
-    function num() {
-        var w = walker,
-            c = w.ch,
-            conf = getConf(),
-            token = c,
-            point = token === '.',
-            nondigit;
-        
-        c = w.nextChar();
-        nondigit = !isDigit(c);
-    
-        // .2px or .classname?
-        if (point && nondigit) {
-            // meh, NaN, could be a class name, so it's an operator for now
-            conf.charend = conf['char'];
-            conf.lineend = conf.line;
-            return tokener(token, '.', conf);    
-        }
-        
-        // -2px or -moz-something
-        if (token === '-' && nondigit) {
-            return identifier('-');
-        }
-    
-        while (c !== false && (isDigit(c) || (!point && c === '.'))) { // not end of source && digit or first instance of .
-            if (c === '.') {
-                point = true;
-            }
-            token += c;
-            c = w.nextChar();
-        }
-
-        tokener(token, 'number', conf);    
-    
-    }
-
-    function op() {
-        var w = walker,
-            c = w.ch,
-            conf = getConf(),
-            token = c,
-            next = w.nextChar();
-            
-        if (next === "=" && isOp(token, true)) {
-            token += next;
-            tokener(token, 'match', conf);
-            w.nextChar();
-            return;
-        } 
-        
-        conf.charend = conf['char'] + 1;
-        conf.lineend = conf.line;    
-        tokener(token, token, conf);
-    }
-
-
-    // call the appropriate handler based on the first character in a token suspect
-    function tokenize() {
-
-        var ch = walker.ch;
-    
-        if (ch === " " || ch === "\t") {
-            return white();
-        }
-
-        if (ch === '/') {
-            return comment();
-        } 
-
-        if (ch === '"' || ch === "'") {
-            return str();
-        }
-        
-        if (ch === '(') {
-            return brace();
-        }
-    
-        if (ch === '-' || ch === '.' || isDigit(ch)) { // tricky - char: minus (-1px) or dash (-moz-stuff)
-            return num();
-        }
-    
-        if (isNameChar(ch)) {
-            return identifier();
-        }
-
-        if (isOp(ch)) {
-            return op();
-        }
-        
-        if (ch === "\n") {
-            tokener("line");
-            walker.nextChar();
-            return;
-        }
-        
-        throw error("Unrecognized character");
-    }
-    
-    /**
-	 * Returns newline character at specified position in content
-	 * @param {String} content
-	 * @param {Number} pos
-	 * @return {String}
-	 */
-	function getNewline(content, pos) {
-		return content.charAt(pos) == '\r' && content.charAt(pos + 1) == '\n' 
-			? '\r\n' 
-			: content.charAt(pos);
-	}
-
-    return {
-    	/**
-    	 * @param source
-    	 * @returns
-    	 * @memberOf emmet.cssParser
-    	 */
-        lex: function (source) {
-            walker.init(source);
-            tokens = [];
-            while (walker.ch !== false) {
-                tokenize();            
-            }
-            return tokens;
-        },
-        
-        /**
-         * Tokenizes CSS source
-         * @param {String} source
-         * @returns {Array}
-         */
-        parse: function(source) {
-        	// transform tokens
-	 		var pos = 0;
-	 		return _.map(this.lex(source), function(token) {
-	 			if (token.type == 'line') {
-	 				token.value = getNewline(source, pos);
-	 			}
-	 			
-	 			return {
-	 				type: token.type,
-	 				start: pos,
-	 				end: (pos += token.value.length)
-	 			};
-			});
-		},
-        
-        toSource: function (toks) {
-            var i = 0, max = toks.length, t, src = '';
-            for (; i < max; i += 1) {
-                t = toks[i];
-                if (t.type === 'line') {
-                    src += '\n';
-                } else {
-                    src += t.value;
-                }
-            }
-            return src;
-        }
-    };
-});/**
- * HTML tokenizer by Marijn Haverbeke
- * http://codemirror.net/
- * @constructor
- * @memberOf __xmlParseDefine
- * @param {Function} require
- * @param {Underscore} _
- */
-emmet.define('xmlParser', function(require, _) {
-	var Kludges = {
-		autoSelfClosers : {},
-		implicitlyClosed : {},
-		contextGrabbers : {},
-		doNotIndent : {},
-		allowUnquoted : true,
-		allowMissing : true
-	};
-
-	// Return variables for tokenizers
-	var tagName = null, type = null;
-
-	function inText(stream, state) {
-		function chain(parser) {
-			state.tokenize = parser;
-			return parser(stream, state);
-		}
-
-		var ch = stream.next();
-		if (ch == "<") {
-			if (stream.eat("!")) {
-				if (stream.eat("[")) {
-					if (stream.match("CDATA["))
-						return chain(inBlock("atom", "]]>"));
-					else
-						return null;
-				} else if (stream.match("--"))
-					return chain(inBlock("comment", "-->"));
-				else if (stream.match("DOCTYPE", true, true)) {
-					stream.eatWhile(/[\w\._\-]/);
-					return chain(doctype(1));
-				} else
-					return null;
-			} else if (stream.eat("?")) {
-				stream.eatWhile(/[\w\._\-]/);
-				state.tokenize = inBlock("meta", "?>");
-				return "meta";
-			} else {
-				type = stream.eat("/") ? "closeTag" : "openTag";
-				stream.eatSpace();
-				tagName = "";
-				var c;
-				while ((c = stream.eat(/[^\s\u00a0=<>\"\'\/?]/)))
-					tagName += c;
-				state.tokenize = inTag;
-				return "tag";
-			}
-		} else if (ch == "&") {
-			var ok;
-			if (stream.eat("#")) {
-				if (stream.eat("x")) {
-					ok = stream.eatWhile(/[a-fA-F\d]/) && stream.eat(";");
-				} else {
-					ok = stream.eatWhile(/[\d]/) && stream.eat(";");
-				}
-			} else {
-				ok = stream.eatWhile(/[\w\.\-:]/) && stream.eat(";");
-			}
-			return ok ? "atom" : "error";
-		} else {
-			stream.eatWhile(/[^&<]/);
-			return "text";
-		}
-	}
-
-	function inTag(stream, state) {
-		var ch = stream.next();
-		if (ch == ">" || (ch == "/" && stream.eat(">"))) {
-			state.tokenize = inText;
-			type = ch == ">" ? "endTag" : "selfcloseTag";
-			return "tag";
-		} else if (ch == "=") {
-			type = "equals";
-			return null;
-		} else if (/[\'\"]/.test(ch)) {
-			state.tokenize = inAttribute(ch);
-			return state.tokenize(stream, state);
-		} else {
-			stream.eatWhile(/[^\s\u00a0=<>\"\'\/?]/);
-			return "word";
-		}
-	}
-
-	function inAttribute(quote) {
-		return function(stream, state) {
-			while (!stream.eol()) {
-				if (stream.next() == quote) {
-					state.tokenize = inTag;
-					break;
-				}
-			}
-			return "string";
-		};
-	}
-
-	function inBlock(style, terminator) {
-		return function(stream, state) {
-			while (!stream.eol()) {
-				if (stream.match(terminator)) {
-					state.tokenize = inText;
-					break;
-				}
-				stream.next();
-			}
-			return style;
-		};
-	}
-	
-	function doctype(depth) {
-		return function(stream, state) {
-			var ch;
-			while ((ch = stream.next()) != null) {
-				if (ch == "<") {
-					state.tokenize = doctype(depth + 1);
-					return state.tokenize(stream, state);
-				} else if (ch == ">") {
-					if (depth == 1) {
-						state.tokenize = inText;
-						break;
-					} else {
-						state.tokenize = doctype(depth - 1);
-						return state.tokenize(stream, state);
-					}
-				}
-			}
-			return "meta";
-		};
-	}
-
-	var curState = null, setStyle;
-	function pass() {
-		for (var i = arguments.length - 1; i >= 0; i--)
-			curState.cc.push(arguments[i]);
-	}
-	
-	function cont() {
-		pass.apply(null, arguments);
-		return true;
-	}
-
-	function pushContext(tagName, startOfLine) {
-		var noIndent = Kludges.doNotIndent.hasOwnProperty(tagName) 
-			|| (curState.context && curState.context.noIndent);
-		curState.context = {
-			prev : curState.context,
-			tagName : tagName,
-			indent : curState.indented,
-			startOfLine : startOfLine,
-			noIndent : noIndent
-		};
-	}
-	
-	function popContext() {
-		if (curState.context)
-			curState.context = curState.context.prev;
-	}
-
-	function element(type) {
-		if (type == "openTag") {
-			curState.tagName = tagName;
-			return cont(attributes, endtag(curState.startOfLine));
-		} else if (type == "closeTag") {
-			var err = false;
-			if (curState.context) {
-				if (curState.context.tagName != tagName) {
-					if (Kludges.implicitlyClosed.hasOwnProperty(curState.context.tagName.toLowerCase())) {
-						popContext();
-					}
-					err = !curState.context || curState.context.tagName != tagName;
-				}
-			} else {
-				err = true;
-			}
-			
-			if (err)
-				setStyle = "error";
-			return cont(endclosetag(err));
-		}
-		return cont();
-	}
-	
-	function endtag(startOfLine) {
-		return function(type) {
-			if (type == "selfcloseTag"
-					|| (type == "endTag" && Kludges.autoSelfClosers
-							.hasOwnProperty(curState.tagName
-									.toLowerCase()))) {
-				maybePopContext(curState.tagName.toLowerCase());
-				return cont();
-			}
-			if (type == "endTag") {
-				maybePopContext(curState.tagName.toLowerCase());
-				pushContext(curState.tagName, startOfLine);
-				return cont();
-			}
-			return cont();
-		};
-	}
-	
-	function endclosetag(err) {
-		return function(type) {
-			if (err)
-				setStyle = "error";
-			if (type == "endTag") {
-				popContext();
-				return cont();
-			}
-			setStyle = "error";
-			return cont(arguments.callee);
-		};
-	}
-	
-	function maybePopContext(nextTagName) {
-		var parentTagName;
-		while (true) {
-			if (!curState.context) {
-				return;
-			}
-			parentTagName = curState.context.tagName.toLowerCase();
-			if (!Kludges.contextGrabbers.hasOwnProperty(parentTagName)
-					|| !Kludges.contextGrabbers[parentTagName].hasOwnProperty(nextTagName)) {
-				return;
-			}
-			popContext();
-		}
-	}
-
-	function attributes(type) {
-		if (type == "word") {
-			setStyle = "attribute";
-			return cont(attribute, attributes);
-		}
-		if (type == "endTag" || type == "selfcloseTag")
-			return pass();
-		setStyle = "error";
-		return cont(attributes);
-	}
-	
-	function attribute(type) {
-		if (type == "equals")
-			return cont(attvalue, attributes);
-		if (!Kludges.allowMissing)
-			setStyle = "error";
-		return (type == "endTag" || type == "selfcloseTag") ? pass()
-				: cont();
-	}
-	
-	function attvalue(type) {
-		if (type == "string")
-			return cont(attvaluemaybe);
-		if (type == "word" && Kludges.allowUnquoted) {
-			setStyle = "string";
-			return cont();
-		}
-		setStyle = "error";
-		return (type == "endTag" || type == "selfCloseTag") ? pass()
-				: cont();
-	}
-	
-	function attvaluemaybe(type) {
-		if (type == "string")
-			return cont(attvaluemaybe);
-		else
-			return pass();
-	}
-	
-	function startState() {
-		return {
-			tokenize : inText,
-			cc : [],
-			indented : 0,
-			startOfLine : true,
-			tagName : null,
-			context : null
-		};
-	}
-	
-	function token(stream, state) {
-		if (stream.sol()) {
-			state.startOfLine = true;
-			state.indented = 0;
-		}
-		
-		if (stream.eatSpace())
-			return null;
-
-		setStyle = type = tagName = null;
-		var style = state.tokenize(stream, state);
-		state.type = type;
-		if ((style || type) && style != "comment") {
-			curState = state;
-			while (true) {
-				var comb = state.cc.pop() || element;
-				if (comb(type || style))
-					break;
-			}
-		}
-		state.startOfLine = false;
-		return setStyle || style;
-	}
-
-	return {
-		/**
-		 * @memberOf emmet.xmlParser
-		 * @returns
-		 */
-		parse: function(data, offset) {
-			offset = offset || 0;
-			var state = startState();
-			var stream = require('stringStream').create(data);
-			var tokens = [];
-			while (!stream.eol()) {
-				tokens.push({
-					type: token(stream, state),
-					start: stream.start + offset,
-					end: stream.pos + offset
-				});
-				stream.start = stream.pos;
-			}
-			
-			return tokens;
-		}		
-	};
 });
 /**
  * Utility module for Emmet
@@ -5024,77 +4268,322 @@ emmet.define('editorUtils', function(require, _) {
 		 * @param {String} profile
 		 */
 		outputInfo: function(editor, syntax, profile) {
-			return  {
+			var info = {
 				/** @memberOf outputInfo */
 				syntax: String(syntax || editor.getSyntax()),
-				profile: String(profile || editor.getProfileName()),
-				content: String(editor.getContent())
+				profile: String(profile || editor.getProfileName())
+			};
+			
+			// editor content is a full copy of document: get it only
+			// when action actually needs it
+			var content = null;
+			info.__defineGetter__('content', function() {
+				if (content === null)
+					content = String(editor.getContent());
+				return content;
+			});
+			
+			/**
+			 * Returns window of editor content around given position,
+			 * see <code>editorUtils.contentWindow()</code>
+			 * @param {Number} pos Window center, caret position by default
+			 * @param {Number} size Initial window size
+			 */
+			info.contentWindow = function(pos, size) {
+				return require('editorUtils').contentWindow(editor, 
+						_.isUndefined(pos) ? editor.getCaretPos() : pos, size);
 			};
+			
+			return info;
 		},
 		
 		/**
-		 * Unindent content, thus preparing text for tag wrapping
-		 * @param {IEmmetEditor} editor Editor instance
-		 * @param {String} text
-		 * @return {String}
+		 * Returns editor content from <code>start</code> to <code>end</code>
+		 * index. Only requested part is copied if editor supports
+		 * <code>getContentRange()</code>
+		 * @param {IEmmetEditor} editor
+		 * @param {Number} start
+		 * @param {Number} end
+		 * @returns {String}
 		 */
-		unindent: function(editor, text) {
-			return require('utils').unindentString(text, this.getCurrentLinePadding(editor));
+		getContentRange: function(editor, start, end) {
+			if (editor.getContentRange)
+				return String(editor.getContentRange(start, end));
+			
+			return String(editor.getContent()).substring(start, end);
 		},
 		
 		/**
-		 * Returns padding of current editor's line
-		 * @param {IEmmetEditor} Editor instance
-		 * @return {String}
+		 * Returns window of editor content around <code>pos</code>: object 
+		 * with <code>content</code> of window and its <code>start</code> 
+		 * index in editor content. Positions in window content are relative
+		 * to window start: <code>win.start + ix</code> is a position in 
+		 * editor. If result can't be found in window, it can be enlarged 
+		 * with <code>grow()</code> method, which returns <code>false</code>
+		 * when window already contains whole editor content
+		 * @param {IEmmetEditor} editor
+		 * @param {Number} pos Window center
+		 * @param {Number} size Initial size of window parts before and 
+		 * after <code>pos</code>
+		 * @returns {Object}
 		 */
-		getCurrentLinePadding: function(editor) {
-			return require('utils').getLinePadding(editor.getCurrentLine());
-		}
-	};
-});
-/**
- * Utility methods for Emmet actions
- * @param {Function} require
- * @param {Underscore} _
- * @author Sergey Chikuyonok (serge.che@gmail.com) <http://chikuyonok.ru>
- */
-emmet.define('actionUtils', function(require, _) {
-	return {
-		mimeTypes: {
-			'gif' : 'image/gif',
-			'png' : 'image/png',
-			'jpg' : 'image/jpeg',
-			'jpeg': 'image/jpeg',
-			'svg' : 'image/svg+xml',
-			'html': 'text/html',
-			'htm' : 'text/html'
+		contentWindow: function(editor, pos, size) {
+			size = size || 4096;
+			var win = {
+				/** @memberOf contentWindow */
+				start: 0,
+				end: 0,
+				content: '',
+				complete: false,
+				
+				grow: function() {
+					if (this.complete)
+						return false;
+					
+					size *= 4;
+					load();
+					return true;
+				}
+			};
+			
+			function load() {
+				win.start = Math.max(pos - size, 0);
+				var end = pos + size;
+				win.content = require('editorUtils').getContentRange(editor, win.start, end);
+				win.end = win.start + win.content.length;
+				win.complete = !win.start && win.end < end;
+			}
+			
+			if (editor.getContentRange) {
+				load();
+			} else {
+				win.content = String(editor.getContent());
+				win.end = win.content.length;
+				win.complete = true;
+			}
+			
+			return win;
 		},
 		
 		/**
-		 * Extracts abbreviations from text stream, starting from the end
-		 * @param {String} str
-		 * @return {String} Abbreviation or empty string
-		 * @memberOf emmet.actionUtils
+		 * Finds HTML tag pair around <code>pos</code>, like 
+		 * <code>html_matcher.getTags()</code> does, but searches in a window
+		 * of editor content which is enlarged until matched pair is found 
+		 * completely inside it. Positions of returned tags are absolute
+		 * @param {IEmmetEditor} editor
+		 * @param {Number} pos
+		 * @param {String} profile
+		 * @returns {Array}
 		 */
-		extractAbbreviation: function(str) {
-			var curOffset = str.length;
-			var startIndex = -1;
-			var groupCount = 0;
-			var braceCount = 0;
-			var textCount = 0;
+		findTags: function(editor, pos, profile) {
+			var matcher = require('html_matcher');
 			
-			var utils = require('utils');
-			var parser = require('abbreviationParser');
+			// editor may maintain index of tags, which is much faster
+			// than parsing content
+			var indexed = editor.getTagPair ? editor.getTagPair(pos, String(profile)) : null;
+			if (indexed)
+				return this.tagsFromPair(editor, indexed, profile);
 			
-			while (true) {
-				curOffset--;
-				if (curOffset < 0) {
-					// moved to the beginning of the line
-					startIndex = 0;
-					break;
-				}
+			var win = this.contentWindow(editor, pos);
+			var tags, relPos;
+			
+			do {
+				relPos = pos - win.start;
+				tags = matcher.getTags(win.content, relPos, profile);
+				if (win.complete || !tags || !tags[0])
+					continue;
 				
-				var ch = str.charAt(curOffset);
+				var open = tags[0], close = tags[1];
+				if (open.type == 'tag' && (close || open.unary)) {
+					// matcher skips comments, which may be cut by window
+					// bounds: pair is valid only if there are no comments 
+					// inside it
+					var pair = win.content.substring(open.start, close ? close.end : open.end);
+					if (pair.indexOf('<!--') == -1 && pair.indexOf('-->') == -1)
+						break;
+				}
+			} while (win.grow());
+			
+			_.each(tags, function(tag) {
+				if (tag) {
+					tag.start += win.start;
+					tag.end += win.start;
+				}
+			});
+			
+			return tags;
+		},
+		
+		/**
+		 * Creates <code>html_matcher.getTags()</code> result from tag pair
+		 * offsets returned by <code>IEmmetEditor.getTagPair()</code>: 
+		 * <code>[kind, openStart, openEnd, closeStart, closeEnd]</code>,
+		 * where <code>kind</code> is 2 for tag, 1 for comment and 0 if 
+		 * nothing found
+		 * @param {IEmmetEditor} editor
+		 * @param {Array} pair
+		 * @param {String} profile
+		 * @returns {Array}
+		 */
+		tagsFromPair: function(editor, pair, profile) {
+			var matcher = require('html_matcher');
+			var kind = +pair[0], os = +pair[1], oe = +pair[2], cs = +pair[3], ce = +pair[4];
+			var editorUtils = this;
+			var createTag = function(start, end) {
+				return matcher.createTag(editorUtils.getContentRange(editor, start, end), start, profile);
+			};
+			
+			if (kind == 2) 
+				return [createTag(os, oe), cs != -1 ? createTag(cs, ce) : null];
+			if (kind == 1)
+				return [matcher.createComment(os, oe), undefined];
+			
+			return [null, undefined];
+		},
+		
+		/**
+		 * Finds tag pair around <code>pos</code> and returns its range, 
+		 * like <code>html_matcher.find()</code> does
+		 * @param {IEmmetEditor} editor
+		 * @param {Number} pos
+		 * @param {String} profile
+		 * @returns {Array} Range as <code>[start, end]</code>, both 
+		 * are -1 if pair wasn't found
+		 */
+		findPair: function(editor, pos, profile) {
+			var tags = this.findTags(editor, pos, profile);
+			return require('html_matcher').makeRange(tags[0], tags[1], pos);
+		},
+		
+		/**
+		 * Finds tag pair around <code>pos</code>, like 
+		 * <code>html_matcher()</code> does: matched pair is saved in 
+		 * matcher's <code>last_match</code> property
+		 * @param {IEmmetEditor} editor
+		 * @param {Number} pos
+		 * @param {String} profile
+		 * @returns {Array} Range as <code>[start, end]</code> or 
+		 * <code>null</code> if pair wasn't found
+		 */
+		matchPair: function(editor, pos, profile) {
+			var tags = this.findTags(editor, pos, profile);
+			return require('html_matcher').saveMatch(tags[0], tags[1], pos);
+		},
+		
+		/**
+		 * Returns string-like object (<code>length</code>, 
+		 * <code>charAt()</code>, <code>substring()</code> and 
+		 * <code>substr()</code>) for reading editor content without copying 
+		 * it. Should be used by actions that read a few characters around
+		 * caret; real string is required for regexp and parser calls
+		 * @param {IEmmetEditor} editor
+		 * @returns {Object}
+		 */
+		contentView: function(editor) {
+			if (!editor.getContentView)
+				return String(editor.getContent());
+			
+			var view = editor.getContentView();
+			var len = view.length();
+			
+			function clamp(ix) {
+				ix = +ix || 0;
+				return Math.min(Math.max(ix, 0), len);
+			}
+			
+			return {
+				length: len,
+				charAt: function(ix) {
+					// Java chars are converted to numbers
+					return ix >= 0 && ix < len ? String.fromCharCode(view.charAt(ix)) : '';
+				},
+				substring: function(start, end) {
+					start = clamp(start);
+					end = _.isUndefined(end) ? len : clamp(end);
+					if (start > end) {
+						var tmp = start;
+						start = end;
+						end = tmp;
+					}
+					
+					return String(view.subSequence(start, end));
+				},
+				substr: function(start, length) {
+					start = +start || 0;
+					if (start < 0)
+						start = Math.max(len + start, 0);
+					start = Math.min(start, len);
+					return this.substring(start, _.isUndefined(length) ? len : start + Math.max(+length || 0, 0));
+				},
+				toString: function() {
+					return String(view);
+				}
+			};
+		},
+		
+		/**
+		 * Unindent content, thus preparing text for tag wrapping
+		 * @param {IEmmetEditor} editor Editor instance
+		 * @param {String} text
+		 * @return {String}
+		 */
+		unindent: function(editor, text) {
+			return require('utils').unindentString(text, this.getCurrentLinePadding(editor));
+		},
+		
+		/**
+		 * Returns padding of current editor's line
+		 * @param {IEmmetEditor} Editor instance
+		 * @return {String}
+		 */
+		getCurrentLinePadding: function(editor) {
+			return require('utils').getLinePadding(editor.getCurrentLine());
+		}
+	};
+});
+/**
+ * Utility methods for Emmet actions
+ * @param {Function} require
+ * @param {Underscore} _
+ * @author Sergey Chikuyonok (serge.che@gmail.com) <http://chikuyonok.ru>
+ */
+emmet.define('actionUtils', function(require, _) {
+	return {
+		mimeTypes: {
+			'gif' : 'image/gif',
+			'png' : 'image/png',
+			'jpg' : 'image/jpeg',
+			'jpeg': 'image/jpeg',
+			'svg' : 'image/svg+xml',
+			'html': 'text/html',
+			'htm' : 'text/html'
+		},
+		
+		/**
+		 * Extracts abbreviations from text stream, starting from the end
+		 * @param {String} str
+		 * @return {String} Abbreviation or empty string
+		 * @memberOf emmet.actionUtils
+		 */
+		extractAbbreviation: function(str) {
+			var curOffset = str.length;
+			var startIndex = -1;
+			var groupCount = 0;
+			var braceCount = 0;
+			var textCount = 0;
+			
+			var utils = require('utils');
+			var parser = require('abbreviationParser');
+			
+			while (true) {
+				curOffset--;
+				if (curOffset < 0) {
+					// moved to the beginning of the line
+					startIndex = 0;
+					break;
+				}
+				
+				var ch = str.charAt(curOffset);
 				
 				if (ch == ']') {
 					braceCount++;
@@ -5204,8 +4693,7 @@ emmet.define('actionUtils', function(require, _) {
 			var allowedSyntaxes = {'html': 1, 'xml': 1, 'xsl': 1};
 			var syntax = String(editor.getSyntax());
 			if (syntax in allowedSyntaxes) {
-				var tags = require('html_matcher').getTags(
-						String(editor.getContent()), 
+				var tags = require('editorUtils').findTags(editor, 
 						editor.getCaretPos(), 
 						String(editor.getProfileName()));
 				
@@ -5244,7 +4732,7 @@ emmet.define('actionUtils', function(require, _) {
 		 * @return {Range}
 		 */
 		findExpressionBounds: function(editor, fn) {
-			var content = String(editor.getContent());
+			var content = require('editorUtils').contentView(editor);
 			var il = content.length;
 			var exprStart = editor.getCaretPos() - 1;
 			var exprEnd = exprStart + 1;
@@ -5389,94 +4877,7 @@ emmet.define('abbreviationUtils', function(require, _) {
  * @author Sergey Chikuyonok (serge.che@gmail.com)
  * @link http://chikuyonok.ru
  */
-emmet.define('base64', function(require, _) {
-	var chars = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=';
-	
-	return {
-		/**
-		 * Encodes data using base64 algorithm
-		 * @author Tyler Akins (http://rumkin.com)
-		 * @param {String} input
-		 * @returns {String}
-		 * @memberOf emmet.base64
-		 */
-		encode : function(input) {
-			var output = [];
-			var chr1, chr2, chr3, enc1, enc2, enc3, enc4, cdp1, cdp2, cdp3;
-			var i = 0, il = input.length, b64 = chars;
-
-			while (i < il) {
-
-				cdp1 = input.charCodeAt(i++);
-				cdp2 = input.charCodeAt(i++);
-				cdp3 = input.charCodeAt(i++);
-
-				chr1 = cdp1 & 0xff;
-				chr2 = cdp2 & 0xff;
-				chr3 = cdp3 & 0xff;
-
-				enc1 = chr1 >> 2;
-				enc2 = ((chr1 & 3) << 4) | (chr2 >> 4);
-				enc3 = ((chr2 & 15) << 2) | (chr3 >> 6);
-				enc4 = chr3 & 63;
-
-				if (isNaN(cdp2)) {
-					enc3 = enc4 = 64;
-				} else if (isNaN(cdp3)) {
-					enc4 = 64;
-				}
-
-				output.push(b64.charAt(enc1) + b64.charAt(enc2) + b64.charAt(enc3) + b64.charAt(enc4));
-			}
-
-			return output.join('');
-		},
-
-		/**
-		 * Decodes string using MIME base64 algorithm
-		 * 
-		 * @author Tyler Akins (http://rumkin.com)
-		 * @param {String} data
-		 * @return {String}
-		 */
-		decode : function(data) {
-			var o1, o2, o3, h1, h2, h3, h4, bits, i = 0, ac = 0, tmpArr = [];
-			var b64 = chars, il = data.length;
-
-			if (!data) {
-				return data;
-			}
-
-			data += '';
-
-			do { // unpack four hexets into three octets using index points in b64
-				h1 = b64.indexOf(data.charAt(i++));
-				h2 = b64.indexOf(data.charAt(i++));
-				h3 = b64.indexOf(data.charAt(i++));
-				h4 = b64.indexOf(data.charAt(i++));
-
-				bits = h1 << 18 | h2 << 12 | h3 << 6 | h4;
-
-				o1 = bits >> 16 & 0xff;
-				o2 = bits >> 8 & 0xff;
-				o3 = bits & 0xff;
-
-				if (h3 == 64) {
-					tmpArr[ac++] = String.fromCharCode(o1);
-				} else if (h4 == 64) {
-					tmpArr[ac++] = String.fromCharCode(o1, o2);
-				} else {
-					tmpArr[ac++] = String.fromCharCode(o1, o2, o3);
-				}
-			} while (i < il);
-
-			return tmpArr.join('');
-		}
-	};
-});/**
- * @author Sergey Chikuyonok (serge.che@gmail.com)
- * @link http://chikuyonok.ru
- */(function(){
+(function(){
 	// Regular Expressions for parsing tags and attributes
 	var start_tag = /^<([\w\:\-]+)((?:\s+[\w\-:]+(?:\s*=\s*(?:(?:"[^"]*")|(?:'[^']*')|[^>\s]+))?)*)\s*(\/?)>/,
 		end_tag = /^<\/([\w\:\-]+)[^>]*>/,
@@ -5766,6 +5167,27 @@ emmet.define('base64', function(require, _) {
 	
 	HTMLPairMatcher.last_match = last_match;
 	
+	/**
+	 * Creates tag object from tag source <code>str</code> located at 
+	 * <code>ix</code> position, the same object as matcher creates when 
+	 * parsing HTML. Used to create tags from positions found by editor's 
+	 * tag index
+	 * @param {String} str Tag source, like <code>&lt;div class="a"&gt;</code>
+	 * @param {Number} ix Tag position
+	 * @param {String} mode Matching mode (profile name)
+	 * @returns {Object} Tag object or <code>null</code> if <code>str</code> 
+	 * is not a tag
+	 */
+	HTMLPairMatcher.createTag = function(str, ix, mode) {
+		setMode(mode);
+		var m = str.match(start_tag) || str.match(end_tag);
+		return m ? tag(m, ix) : null;
+	};
+	
+	HTMLPairMatcher.createComment = comment;
+	HTMLPairMatcher.makeRange = makeRange;
+	HTMLPairMatcher.saveMatch = saveMatch;
+	
 	try {
 		emmet.define('html_matcher', function() {
 			return HTMLPairMatcher;
@@ -6355,1346 +5777,170 @@ emmet.define('filters', function(require, _) {
 		 */
 		apply: function(tree, filters, profile) {
 			var utils = require('utils');
-			profile = require('profile').get(profile);
-			
-			_.each(list(filters), function(filter) {
-				var name = utils.trim(filter.toLowerCase());
-				if (name && name in registeredFilters) {
-					tree = registeredFilters[name](tree, profile);
-				}
-			});
-			
-			return tree;
-		},
-		
-		/**
-		 * Composes list of filters that should be applied to a tree, based on 
-		 * passed data
-		 * @param {String} syntax Syntax name ('html', 'css', etc.)
-		 * @param {Object} profile Output profile
-		 * @param {String} additionalFilters List or pipe-separated
-		 * string of additional filters to apply
-		 * @returns {Array}
-		 */
-		composeList: function(syntax, profile, additionalFilters) {
-			profile = require('profile').get(profile);
-			var filters = list(profile.filters || require('resources').getSubset(syntax, 'filters') || basicFilters);
-				
-			if (additionalFilters)
-				filters = filters.concat(list(additionalFilters));
-				
-			if (!filters || !filters.length)
-				// looks like unknown syntax, apply basic filters
-				filters = list(basicFilters);
-				
-			return filters;
-		},
-		
-		/**
-		 * Extracts filter list from abbreviation
-		 * @param {String} abbr
-		 * @returns {Array} Array with cleaned abbreviation and list of 
-		 * extracted filters
-		 */
-		extractFromAbbreviation: function(abbr) {
-			var filters = '';
-			abbr = abbr.replace(/\|([\w\|\-]+)$/, function(str, p1){
-				filters = p1;
-				return '';
-			});
-			
-			return [abbr, list(filters)];
-		}
-	};
-});/**
- * Module that contains factories for element types used by Emmet
- * @param {Function} require
- * @param {Underscore} _
- */
-emmet.define('elements', function(require, _) {
-	var factories = {};
-	var reAttrs = /([\w\-]+)\s*=\s*(['"])(.*?)\2/g;
-	
-	var result = {
-		/**
-		 * Create new element factory
-		 * @param {String} name Element identifier
-		 * @param {Function} factory Function that produces element of specified 
-		 * type. The object generated by this factory is automatically 
-		 * augmented with <code>type</code> property pointing to element
-		 * <code>name</code>
-		 * @memberOf elements
-		 */
-		add: function(name, factory) {
-			var that = this;
-			factories[name] = function() {
-				var elem = factory.apply(that, arguments);
-				if (elem)
-					elem.type = name;
-				
-				return elem;
-			};
-		},
-		
-		/**
-		 * Returns factory for specified name
-		 * @param {String} name
-		 * @returns {Function}
-		 */
-		get: function(name) {
-			return factories[name];
-		},
-		
-		/**
-		 * Creates new element with specified type
-		 * @param {String} name
-		 * @returns {Object}
-		 */
-		create: function(name) {
-			var args = [].slice.call(arguments, 1);
-			var factory = this.get(name);
-			return factory ? factory.apply(this, args) : null;
-		},
-		
-		/**
-		 * Check if passed element is of specified type
-		 * @param {Object} elem
-		 * @param {String} type
-		 * @returns {Boolean}
-		 */
-		is: function(elem, type) {
-			return elem && elem.type === type;
-		}
-	};
-	
-	// register resource references
-	function commonFactory(value) {
-		return {data: value};
-	}
-	
-	/**
-	 * Element factory
-	 * @param {String} elementName Name of output element
-	 * @param {String} attrs Attributes definition. You may also pass
-	 * <code>Array</code> where each contains object with <code>name</code> 
-	 * and <code>value</code> properties, or <code>Object</code>
-	 * @param {Boolean} isEmpty Is expanded element should be empty
-	 */
-	result.add('element', function(elementName, attrs, isEmpty) {
-		var ret = {
-			/** @memberOf __emmetDataElement */
-			name: elementName,
-			is_empty: !!isEmpty
-		};
-		
-		if (attrs) {
-			ret.attributes = [];
-			if (_.isArray(attrs)) {
-				ret.attributes = attrs;
-			} else if (_.isString(attrs)) {
-				var m;
-				while (m = reAttrs.exec(attrs)) {
-					ret.attributes.push({
-						name: m[1],
-						value: m[3]
-					});
-				}
-			} else {
-				_.each(attrs, function(value, name) {
-					ret.attributes.push({
-						name: name, 
-						value: value
-					});
-				});
-			}
-		}
-		
-		return ret;
-	});
-	
-	result.add('snippet', commonFactory);
-	result.add('reference', commonFactory);
-	result.add('empty', function() {
-		return {};
-	});
-	
-	return result;
-});/**
- * Abstract implementation of edit tree interface.
- * Edit tree is a named container of editable “name-value” child elements, 
- * parsed from <code>source</code>. This container provides convenient methods
- * for editing/adding/removing child elements. All these update actions are
- * instantly reflected in the <code>source</code> code with respect of formatting.
- * <br><br>
- * For example, developer can create an edit tree from CSS rule and add or 
- * remove properties from it–all changes will be immediately reflected in the 
- * original source.
- * <br><br>
- * All classes defined in this module should be extended the same way as in
- * Backbone framework: using <code>extend</code> method to create new class and 
- * <code>initialize</code> method to define custom class constructor.
- * 
- * @example
- * <pre><code>
- * var MyClass = require('editTree').EditElement.extend({
- * 	initialize: function() {
- * 		// constructor code here
- * 	}
- * });
- * 
- * var elem = new MyClass(); 
- * </code></pre>
- * 
- * 
- * @param {Function} require
- * @param {Underscore} _
- * @constructor
- * @memberOf __editTreeDefine
- */
-emmet.define('editTree', function(require, _, core) {
-	var range = require('range').create;
-	
-	/**
-	 * Named container of edited source
-	 * @type EditContainer
-	 * @param {String} source
-	 * @param {Object} options
-	 */
-	function EditContainer(source, options) {
-		this.options = _.extend({offset: 0}, options);
-		/**
-		 * Source code of edited structure. All changes in the structure are 
-		 * immediately reflected into this property
-		 */
-		this.source = source;
-		
-		/** 
-		 * List of all editable children
-		 * @private 
-		 */
-		this._children = [];
-		
-		/**
-		 * Hash of all positions of container
-		 * @private
-		 */
-		this._positions = {
-			name: 0
-		};
-		
-		this.initialize.apply(this, arguments);
-	}
-	
-	/**
-	 * The self-propagating extend function for classes.
-	 * @type Function
-	 */
-	EditContainer.extend = core.extend;
-	
-	EditContainer.prototype = {
-		/**
-		 * Child class constructor
-		 */
-		initialize: function() {},
-		
-		/**
-		 * Replace substring of tag's source
-		 * @param {String} value
-		 * @param {Number} start
-		 * @param {Number} end
-		 * @private
-		 */
-		_updateSource: function(value, start, end) {
-			// create modification range
-			var r = range(start, _.isUndefined(end) ? 0 : end - start);
-			var delta = value.length - r.length();
-			
-			var update = function(obj) {
-				_.each(obj, function(v, k) {
-					if (v >= r.end)
-						obj[k] += delta;
-				});
-			};
-			
-			// update affected positions of current container
-			update(this._positions);
-			
-			// update affected positions of children
-			_.each(this.list(), function(item) {
-				update(item._positions);
-			});
-			
-			this.source = require('utils').replaceSubstring(this.source, value, r);
-		},
-			
-			
-		/**
-		 * Adds new attribute 
-		 * @param {String} name Property name
-		 * @param {String} value Property value
-		 * @param {Number} pos Position at which to insert new property. By 
-		 * default the property is inserted at the end of rule 
-		 * @returns {EditElement} Newly created element
-		 */
-		add: function(name, value, pos) {
-			// this is abstract implementation
-			var item = new EditElement(name, value);
-			this._children.push(item);
-			return item;
-		},
-		
-		/**
-		 * Returns attribute object
-		 * @param {String} name Attribute name or its index
-		 * @returns {EditElement}
-		 */
-		get: function(name) {
-			if (_.isNumber(name))
-				return this.list()[name];
-			
-			if (_.isString(name))
-				return _.find(this.list(), function(prop) {
-					return prop.name() === name;
-				});
-			
-			return name;
-		},
-		
-		/**
-		 * Returns all children by name or indexes
-		 * @param {Object} name Element name(s) or indexes (<code>String</code>,
-		 * <code>Array</code>, <code>Number</code>)
-		 * @returns {Array}
-		 */
-		getAll: function(name) {
-			if (!_.isArray(name))
-				name = [name];
-			
-			// split names and indexes
-			var names = [], indexes = [];
-			_.each(name, function(item) {
-				if (_.isString(item))
-					names.push(item);
-				else if (_.isNumber(item))
-					indexes.push(item);
-			});
-			
-			return _.filter(this.list(), function(attribute, i) {
-				return _.include(indexes, i) || _.include(names, attribute.name());
-			});
-		},
-		
-		/**
-		 * Returns or updates element value. If such element doesn't exists,
-		 * it will be created automatically and added at the end of child list.
-		 * @param {String} name Element name or its index
-		 * @param {String} value New element value
-		 * @returns {String}
-		 */
-		value: function(name, value, pos) {
-			var element = this.get(name);
-			if (element)
-				return element.value(value);
-			
-			if (!_.isUndefined(value)) {
-				// no such element — create it
-				return this.add(name, value, pos);
-			}
-		},
-		
-		/**
-		 * Returns all values of child elements found by <code>getAll()</code>
-		 * method
-		 * @param {Object} name Element name(s) or indexes (<code>String</code>,
-		 * <code>Array</code>, <code>Number</code>)
-		 * @returns {Array}
-		 */
-		values: function(name) {
-			return _.map(this.getAll(name), function(element) {
-				return element.value();
-			});
-		},
-		
-		/**
-		 * Remove child element
-		 * @param {String} name Property name or its index
-		 */
-		remove: function(name) {
-			var element = this.get(name);
-			if (element) {
-				this._updateSource('', element.fullRange());
-				this._children = _.without(this._children, element);
-			}
-		},
-		
-		/**
-		 * Returns list of all editable child elements
-		 * @returns {Array}
-		 */
-		list: function() {
-			return this._children;
-		},
-		
-		/**
-		 * Returns index of editble child in list
-		 * @param {Object} item
-		 * @returns {Number}
-		 */
-		indexOf: function(item) {
-			return _.indexOf(this.list(), this.get(item));
-		},
-		
-		/**
-		 * Sets or gets container name
-		 * @param {String} val New name. If not passed, current 
-		 * name is returned
-		 * @return {String}
-		 */
-		name: function(val) {
-			if (!_.isUndefined(val) && this._name !== (val = String(val))) {
-				this._updateSource(val, this._positions.name, this._positions.name + this._name.length);
-				this._name = val;
-			}
-			
-			return this._name;
-		},
-		
-		/**
-		 * Returns name range object
-		 * @param {Boolean} isAbsolute Return absolute range (with respect of 
-		 * rule offset)
-		 * @returns {Range}
-		 */
-		nameRange: function(isAbsolute) {
-			return range(this._positions.name + (isAbsolute ? this.options.offset : 0), this.name());
-		},
-		
-		/**
-		 * Returns range of current source
-		 * @param {Boolean} isAbsolute
-		 */
-		range: function(isAbsolute) {
-			return range(isAbsolute ? this.options.offset : 0, this.toString());
-		},
-		
-		/**
-		 * Returns element that belongs to specified position
-		 * @param {Number} pos
-		 * @param {Boolean} isAbsolute
-		 * @returns {EditElement}
-		 */
-		itemFromPosition: function(pos, isAbsolute) {
-			return _.find(this.list(), function(elem) {
-				return elem.range(isAbsolute).inside(pos);
-			});
-		},
-		
-		/**
-		 * Returns source code of current container 
-		 * @returns {String}
-		 */
-		toString: function() {
-			return this.source;
-		}
-	};
-	
-	/**
-	 * @param {EditContainer} parent
-	 * @param {Object} nameToken
-	 * @param {Object} valueToken
-	 */
-	function EditElement(parent, nameToken, valueToken) {
-		/** @type EditContainer */
-		this.parent = parent;
-		
-		this._name = nameToken.value;
-		this._value = valueToken ? valueToken.value : '';
-		
-		this._positions = {
-			name: nameToken.start,
-			value: valueToken ? valueToken.start : -1
-		};
-		
-		this.initialize.apply(this, arguments);
-	}
-	
-	/**
-	 * The self-propagating extend function for classes.
-	 * @type Function
-	 */
-	EditElement.extend = core.extend;
-	
-	EditElement.prototype = {
-		/**
-		 * Child class constructor
-		 */
-		initialize: function() {},
-		
-		/**
-		 * Make position absolute
-		 * @private
-		 * @param {Number} num
-		 * @param {Boolean} isAbsolute
-		 * @returns {Boolean}
-		 */
-		_pos: function(num, isAbsolute) {
-			return num + (isAbsolute ? this.parent.options.offset : 0);
-		},
-			
-		/**
-		 * Sets of gets element value
-		 * @param {String} val New element value. If not passed, current 
-		 * value is returned
-		 * @returns {String}
-		 */
-		value: function(val) {
-			if (!_.isUndefined(val) && this._value !== (val = String(val))) {
-				this.parent._updateSource(val, this.valueRange());
-				this._value = val;
-			}
-			
-			return this._value;
-		},
-		
-		/**
-		 * Sets of gets element name
-		 * @param {String} val New element name. If not passed, current 
-		 * name is returned
-		 * @returns {String}
-		 */
-		name: function(val) {
-			if (!_.isUndefined(val) && this._name !== (val = String(val))) {
-				this.parent._updateSource(val, this.nameRange());
-				this._name = val;
-			}
-			
-			return this._name;
-		},
-		
-		/**
-		 * Returns position of element name token
-		 * @param {Boolean} isAbsolute Return absolute position
-		 * @returns {Number}
-		 */
-		namePosition: function(isAbsolute) {
-			return this._pos(this._positions.name, isAbsolute);
-		},
-		
-		/**
-		 * Returns position of element value token
-		 * @param {Boolean} isAbsolute Return absolute position
-		 * @returns {Number}
-		 */
-		valuePosition: function(isAbsolute) {
-			return this._pos(this._positions.value, isAbsolute);
-		},
-		
-		/**
-		 * Returns element name
-		 * @param {Boolean} isAbsolute Return absolute range 
-		 * @returns {Range}
-		 */
-		range: function(isAbsolute) {
-			return range(this.namePosition(isAbsolute), this.toString());
-		},
-		
-		/**
-		 * Returns full element range, including possible indentation
-		 * @param {Boolean} isAbsolute Return absolute range
-		 * @returns {Range}
-		 */
-		fullRange: function(isAbsolute) {
-			return this.range(isAbsolute);
-		},
-		
-		/**
-		 * Returns element name range
-		 * @param {Boolean} isAbsolute Return absolute range
-		 * @returns {Range}
-		 */
-		nameRange: function(isAbsolute) {
-			return range(this.namePosition(isAbsolute), this.name());
-		},
-		
-		/**
-		 * Returns element value range
-		 * @param {Boolean} isAbsolute Return absolute range
-		 * @returns {Range}
-		 */
-		valueRange: function(isAbsolute) {
-			return range(this.valuePosition(isAbsolute), this.value());
-		},
-		
-		/**
-		 * Returns current element string representation
-		 * @returns {String}
-		 */
-		toString: function() {
-			return this.name() + this.value();
-		},
-		
-		valueOf: function() {
-			return this.toString();
-		}
-	};
-	
-	return {
-		EditContainer: EditContainer,
-		EditElement: EditElement,
-		
-		/**
-		 * Creates token that can be fed to <code>EditElement</code>
-		 * @param {Number} start
-		 * @param {String} value
-		 * @param {String} type
-		 * @returns
-		 */
-		createToken: function(start, value, type) {
-			var obj = {
-				start: start || 0,
-				value: value || '',
-				type: type
-			};
-			
-			obj.end = obj.start + obj.value.length;
-			return obj;
-		}
-	};
-});/**
- * CSS EditTree is a module that can parse a CSS rule into a tree with 
- * convenient methods for adding, modifying and removing CSS properties. These 
- * changes can be written back to string with respect of code formatting.
- * 
- * @memberOf __cssEditTreeDefine
- * @constructor
- * @param {Function} require
- * @param {Underscore} _ 
- */
-emmet.define('cssEditTree', function(require, _) {
-	var defaultOptions = {
-		styleBefore: '\n\t',
-		styleSeparator: ': ',
-		offset: 0
-	};
-	
-	var WHITESPACE_REMOVE_FROM_START = 1;
-	var WHITESPACE_REMOVE_FROM_END   = 2;
-	
-	/**
-	 * Returns range object
-	 * @param {Number} start
-	 * @param {Number} len 
-	 * @returns {Range}
-	 */
-	function range(start, len) {
-		return require('range').create(start, len);
-	}
-	
-	/**
-	 * Removes whitespace tokens from the array ends
-	 * @param {Array} tokens
-	 * @param {Number} mask Mask indicating from which end whitespace should be 
-	 * removed 
-	 * @returns {Array}
-	 */
-	function trimWhitespaceTokens(tokens, mask) {
-		mask = mask || (WHITESPACE_REMOVE_FROM_START | WHITESPACE_REMOVE_FROM_END);
-		var whitespace = ['white', 'line'];
-		
-		if ((mask & WHITESPACE_REMOVE_FROM_END) == WHITESPACE_REMOVE_FROM_END)
-			while (tokens.length && _.include(whitespace, _.last(tokens).type)) {
-				tokens.pop();
-	 		}
-		
-		if ((mask & WHITESPACE_REMOVE_FROM_START) == WHITESPACE_REMOVE_FROM_START)
-			while (tokens.length && _.include(whitespace, tokens[0].type)) {
-				tokens.shift();
-			}
-		
-		return tokens;
-	}
-	
-	/**
-	 * Helper function that searches for selector range for <code>CSSEditRule</code>
-	 * @param {TokenIterator} it
-	 * @returns {Range}
-	 */
-	function findSelectorRange(it) {
-		var tokens = [], token;
- 		var start = it.position(), end;
- 		
- 		while (token = it.next()) {
-			if (token.type == '{')
-				break;
-			tokens.push(token);
-		}
- 		
- 		trimWhitespaceTokens(tokens);
- 		
- 		if (tokens.length) {
- 			start = tokens[0].start;
- 			end = _.last(tokens).end;
- 		} else {
- 			end = start;
- 		}
- 		
- 		return range(start, end - start);
-	}
-	
-	/**
-	 * Helper function that searches for CSS property value range next to
-	 * iterator's current position  
-	 * @param {TokenIterator} it
-	 * @returns {Range}
-	 */
-	function findValueRange(it) {
-		// find value start position
-		var skipTokens = ['white', 'line', ':'];
-		var tokens = [], token, start, end;
-		
-		it.nextUntil(function(tok) {
-			return !_.include(skipTokens, this.itemNext().type);
-		});
-		
-		start = it.current().end;
-		// consume value
-		while (token = it.next()) {
-			if (token.type == '}' || token.type == ';') {
-				// found value end
-				trimWhitespaceTokens(tokens, WHITESPACE_REMOVE_FROM_START 
-						| (token.type == '}' ? WHITESPACE_REMOVE_FROM_END : 0));
-				
-				if (tokens.length) {
-					start = tokens[0].start;
-					end = _.last(tokens).end;
-				} else {
-					end = start;
-				}
-				
-				return range(start, end - start);
-			}
-			
-			tokens.push(token);
-		}
-		
-		// reached the end of tokens list
-		if (tokens.length) {
-			return range(tokens[0].start, _.last(tokens).end - tokens[0].start);
-		}
-	}
-	
-	/**
-	 * Finds parts of complex CSS value
-	 * @param {String} str
-	 * @returns {Array} Returns list of <code>Range</code>'s
-	 */
-	function findParts(str) {
-		/** @type StringStream */
-		var stream = require('stringStream').create(str);
-		var ch;
-		var result = [];
-		var sep = /[\s\u00a0,]/;
-		
-		var add = function() {
-			stream.next();
-			result.push(range(stream.start, stream.current()));
-			stream.start = stream.pos;
-		};
-		
-		// skip whitespace
-		stream.eatSpace();
-		stream.start = stream.pos;
-		
-		while (ch = stream.next()) {
-			if (ch == '"' || ch == "'") {
-				stream.next();
-				if (!stream.skipTo(ch)) break;
-				add();
-			} else if (ch == '(') {
-				// function found, may have nested function
-				stream.backUp(1);
-				if (!stream.skipToPair('(', ')')) break;
-				stream.backUp(1);
-				add();
-			} else {
-				if (sep.test(ch)) {
-					result.push(range(stream.start, stream.current().length - 1));
-					stream.eatWhile(sep);
-					stream.start = stream.pos;
-				}
-			}
-		}
-		
-		add();
-		
-		return _.chain(result)
-			.filter(function(item) {
-				return !!item.length();
-			})
-			.uniq(false, function(item) {
-				return item.toString();
-			})
-			.value();
-	}
-	
-	/**
-	 * A bit hacky way to identify invalid CSS property definition: when user
-	 * starts writing new abbreviation in CSS rule, he actually creates invalid
-	 * CSS property definition and this method tries to identify such abbreviation
-	 * and prevent it from being added to CSS edit tree 
-	 * @param {TokenIterator} it
-	 */
-	function isValidIdentifier(it) {
-//		return true;
-		var tokens = it.tokens;
-		for (var i = it._i + 1, il = tokens.length; i < il; i++) {
-			if (tokens[i].type == ':')
-				return true;
-			
-			if (tokens[i].type == 'identifier' || tokens[i].type == 'line')
-				return false;
-		}
-		
-		return false;
-	}
-	
-	/**
-	 * @class
-	 * @extends EditContainer
-	 */
-	var CSSEditContainer = require('editTree').EditContainer.extend({
-		initialize: function(source, options) {
-			_.defaults(this.options, defaultOptions);
-			var editTree = require('editTree');
-			
-			/** @type TokenIterator */
-	 		var it = require('tokenIterator').create(
-	 				require('cssParser').parse(source));
-	 		
-	 		var selectorRange = findSelectorRange(it);
-	 		this._positions.name = selectorRange.start;
-	 		this._name = selectorRange.substring(source);
-	 		
-	 		if (!it.current() || it.current().type != '{')
-	 			throw 'Invalid CSS rule';
-	 		
-	 		this._positions.contentStart = it.position() + 1;
-	 		
-	 		// consume properties
-	 		var propertyRange, valueRange, token;
-			while (token = it.next()) {
-				if (token.type == 'identifier' && isValidIdentifier(it)) {
-					propertyRange = range(token);
-					valueRange = findValueRange(it);
-					var end = (it.current() && it.current().type == ';') 
-						? range(it.current())
-						: range(valueRange.end, 0);
-					this._children.push(new CSSEditElement(this,
-							editTree.createToken(propertyRange.start, propertyRange.substring(source)),
-							editTree.createToken(valueRange.start, valueRange.substring(source)),
-							editTree.createToken(end.start, end.substring(source))
-							));
-				}
-			}
-			
-			this._saveStyle();
-		},
-		
-		/**
-		 * Remembers all styles of properties
-		 * @private
-		 */
-		_saveStyle: function() {
-			var start = this._positions.contentStart;
-			var source = this.source;
-			var utils = require('utils');
-			
-			_.each(this.list(), /** @param {CSSEditProperty} p */ function(p) {
-				p.styleBefore = source.substring(start, p.namePosition());
-				// a small hack here:
-				// Sometimes users add empty lines before properties to logically
-				// separate groups of properties. In this case, a blind copy of
-				// characters between rules may lead to undesired behavior,
-				// especially when current rule is duplicated or used as a donor
-				// to create new rule.
-				// To solve this issue, we‘ll take only last newline indentation
-				var lines = utils.splitByLines(p.styleBefore);
-				if (lines.length > 1) {
-					p.styleBefore = '\n' + _.last(lines);
-				}
-				
-				p.styleSeparator = source.substring(p.nameRange().end, p.valuePosition());
-				
-				// graceful and naive comments removal 
-				p.styleBefore = _.last(p.styleBefore.split('*/'));
-				p.styleSeparator = p.styleSeparator.replace(/\/\*.*?\*\//g, '');
-				
-				start = p.range().end;
-			});
-		},
-		
-		/**
-		 * Adds new CSS property 
-		 * @param {String} name Property name
-		 * @param {String} value Property value
-		 * @param {Number} pos Position at which to insert new property. By 
-		 * default the property is inserted at the end of rule 
-		 * @returns {CSSEditProperty}
-		 */
-		add: function(name, value, pos) {
-			var list = this.list();
-			var start = this._positions.contentStart;
-			var styles = _.pick(this.options, 'styleBefore', 'styleSeparator');
-			var editTree = require('editTree');
-			
-			if (_.isUndefined(pos))
-				pos = list.length;
-			
-			/** @type CSSEditProperty */
-			var donor = list[pos];
-			if (donor) {
-				start = donor.fullRange().start;
-			} else if (donor = list[pos - 1]) {
-				// make sure that donor has terminating semicolon
-				donor.end(';');
-				start = donor.range().end;
-			}
-			
-			if (donor) {
-				styles = _.pick(donor, 'styleBefore', 'styleSeparator');
-			}
-			
-			var nameToken = editTree.createToken(start + styles.styleBefore.length, name);
-			var valueToken = editTree.createToken(nameToken.end + styles.styleSeparator.length, value);
-			
-			var property = new CSSEditElement(this, nameToken, valueToken,
-					editTree.createToken(valueToken.end, ';'));
-			
-			_.extend(property, styles);
-			
-			// write new property into the source
-			this._updateSource(property.styleBefore + property.toString(), start);
-			
-			// insert new property
-			this._children.splice(pos, 0, property);
-			return property;
-		}
-	});
-	
-	/**
-	 * @class
-	 * @type CSSEditElement
-	 * @constructor
-	 */
-	var CSSEditElement = require('editTree').EditElement.extend({
-		initialize: function(rule, name, value, end) {
-			this.styleBefore = rule.options.styleBefore;
-			this.styleSeparator = rule.options.styleSeparator;
-			
-			this._end = end.value;
-			this._positions.end = end.start;
-		},
-		
-		/**
-		 * Returns ranges of complex value parts
-		 * @returns {Array} Returns <code>null</code> if value is not complex
-		 */
-		valueParts: function(isAbsolute) {
-			var parts = findParts(this.value());
-			if (isAbsolute) {
-				var offset = this.valuePosition(true);
-				_.each(parts, function(p) {
-					p.shift(offset);
-				});
-			}
-			
-			return parts;
-		},
-		
-		/**
-		 * Sets of gets property end value (basically, it's a semicolon)
-		 * @param {String} val New end value. If not passed, current 
-		 * value is returned
-		 */
-		end: function(val) {
-			if (!_.isUndefined(val) && this._end !== val) {
-				this.parent._updateSource(val, this._positions.end, this._positions.end + this._end.length);
-				this._end = val;
-			}
-			
-			return this._end;
-		},
-		
-		/**
-		 * Returns full rule range, with indentation
-		 * @param {Boolean} isAbsolute Return absolute range (with respect of
-		 * rule offset)
-		 * @returns {Range}
-		 */
-		fullRange: function(isAbsolute) {
-			var r = this.range(isAbsolute);
-			r.start -= this.styleBefore.length;
-			return r;
-		},
-		
-		/**
-		 * Returns item string representation
-		 * @returns {String}
-		 */
-		toString: function() {
-			return this.name() + this.styleSeparator + this.value() + this.end();
-		}
-	});
-	
-	return {
-		/**
-		 * Parses CSS rule into editable tree
-		 * @param {String} source
-		 * @param {Object} options
-		 * @memberOf emmet.cssEditTree
-		 * @returns {EditContainer}
-		 */
-		parse: function(source, options) {
-			return new CSSEditContainer(source, options);
-		},
-		
-		/**
-		 * Extract and parse CSS rule from specified position in <code>content</code> 
-		 * @param {String} content CSS source code
-		 * @param {Number} pos Character position where to start source code extraction
-		 * @returns {EditContainer}
-		 */
-		parseFromPosition: function(content, pos, isBackward) {
-			var bounds = this.extractRule(content, pos, isBackward);
-			if (!bounds || !bounds.inside(pos))
-				// no matching CSS rule or caret outside rule bounds
-				return null;
-			
-			return this.parse(bounds.substring(content), {
-				offset: bounds.start
-			});
-		},
-		
-		/**
-		 * Extracts single CSS selector definition from source code
-		 * @param {String} content CSS source code
-		 * @param {Number} pos Character position where to start source code extraction
-		 * @returns {Range}
-		 */
-		extractRule: function(content, pos, isBackward) {
-			var result = '';
-			var len = content.length;
-			var offset = pos;
-			var stopChars = '{}/\\<>';
-			var bracePos = -1, ch;
-			
-			// search left until we find rule edge
-			while (offset >= 0) {
-				ch = content.charAt(offset);
-				if (ch == '{') {
-					bracePos = offset;
-					break;
-				}
-				else if (ch == '}' && !isBackward) {
-					offset++;
-					break;
-				}
-				
-				offset--;
-			}
-			
-			// search right for full rule set
-			while (offset < len) {
-				ch = content.charAt(offset);
-				if (ch == '{') {
-					bracePos = offset;
-				} else if (ch == '}') {
-					if (bracePos != -1)
-						result = content.substring(bracePos, offset + 1);
-					break;
-				}
-				
-				offset++;
-			}
-			
-			if (result) {
-				// find CSS selector
-				offset = bracePos - 1;
-				var selector = '';
-				while (offset >= 0) {
-					ch = content.charAt(offset);
-					if (stopChars.indexOf(ch) != -1) break;
-					offset--;
-				}
-				
-				// also trim whitespace
-				selector = content.substring(offset + 1, bracePos).replace(/^[\s\n\r]+/m, '');
-				return require('range').create(bracePos - selector.length, result.length + selector.length);
-			}
-			
-			return null;
-		},
-		
-		/**
-	 	 * Removes vendor prefix from CSS property
-	 	 * @param {String} name CSS property
-	 	 * @return {String}
-	 	 */
-	 	baseName: function(name) {
-	 		return name.replace(/^\s*\-\w+\-/, '');
-	 	},
-	 	
-	 	/**
-	 	 * Finds parts of complex CSS value
-	 	 * @param {String} str
-	 	 * @returns {Array}
-	 	 */
-	 	findParts: findParts
-	};
-});/**
- * XML EditTree is a module that can parse an XML/HTML element into a tree with 
- * convenient methods for adding, modifying and removing attributes. These 
- * changes can be written back to string with respect of code formatting.
- * 
- * @memberOf __xmlEditTreeDefine
- * @constructor
- * @param {Function} require
- * @param {Underscore} _ 
- */
-emmet.define('xmlEditTree', function(require, _) {
-	var defaultOptions = {
-		styleBefore: ' ',
-		styleSeparator: '=',
-		styleQuote: '"',
-		offset: 0
-	};
-	
-	var startTag = /^<([\w\:\-]+)((?:\s+[\w\-:]+(?:\s*=\s*(?:(?:"[^"]*")|(?:'[^']*')|[^>\s]+))?)*)\s*(\/?)>/m;
-	
-	var XMLEditContainer = require('editTree').EditContainer.extend({
-		initialize: function(source, options) {
-			_.defaults(this.options, defaultOptions);
-			this._positions.name = 1;
-			
-			var attrToken = null;
-			var tokens = require('xmlParser').parse(source);
-			var range = require('range');
-			
-			_.each(tokens, function(token) {
-				token.value = range.create(token).substring(source);
-				switch (token.type) {
-					case 'tag':
-						if (/^<[^\/]+/.test(token.value)) {
-							this._name = token.value.substring(1);
-						}
-						break;
-						
-					case 'attribute':
-						// add empty attribute
-						if (attrToken) {
-							this._children.push(new XMLEditElement(this, attrToken));
-						}
-						
-						attrToken = token;
-						break;
-						
-					case 'string':
-						this._children.push(new XMLEditElement(this, attrToken, token));
-						attrToken = null;
-						break;
-				}
-			}, this);
+			profile = require('profile').get(profile);
 			
-			if (attrToken) {
-				this._children.push(new XMLEditElement(this, attrToken));
-			}
+			_.each(list(filters), function(filter) {
+				var name = utils.trim(filter.toLowerCase());
+				if (name && name in registeredFilters) {
+					tree = registeredFilters[name](tree, profile);
+				}
+			});
 			
-			this._saveStyle();
+			return tree;
 		},
 		
 		/**
-		 * Remembers all styles of properties
-		 * @private
+		 * Composes list of filters that should be applied to a tree, based on 
+		 * passed data
+		 * @param {String} syntax Syntax name ('html', 'css', etc.)
+		 * @param {Object} profile Output profile
+		 * @param {String} additionalFilters List or pipe-separated
+		 * string of additional filters to apply
+		 * @returns {Array}
 		 */
-		_saveStyle: function() {
-			var start = this.nameRange().end;
-			var source = this.source;
-			
-			_.each(this.list(), /** @param {EditElement} p */ function(p) {
-				p.styleBefore = source.substring(start, p.namePosition());
+		composeList: function(syntax, profile, additionalFilters) {
+			profile = require('profile').get(profile);
+			var filters = list(profile.filters || require('resources').getSubset(syntax, 'filters') || basicFilters);
 				
-				if (p.valuePosition() !== -1) {
-					p.styleSeparator = source.substring(p.namePosition() + p.name().length, p.valuePosition() - p.styleQuote.length);
-				}
+			if (additionalFilters)
+				filters = filters.concat(list(additionalFilters));
 				
-				start = p.range().end;
-			});
+			if (!filters || !filters.length)
+				// looks like unknown syntax, apply basic filters
+				filters = list(basicFilters);
+				
+			return filters;
 		},
 		
 		/**
-		 * Adds new attribute 
-		 * @param {String} name Property name
-		 * @param {String} value Property value
-		 * @param {Number} pos Position at which to insert new property. By 
-		 * default the property is inserted at the end of rule 
+		 * Extracts filter list from abbreviation
+		 * @param {String} abbr
+		 * @returns {Array} Array with cleaned abbreviation and list of 
+		 * extracted filters
 		 */
-		add: function(name, value, pos) {
-			var list = this.list();
-			var start = this.nameRange().end;
-			var editTree = require('editTree');
-			var styles = _.pick(this.options, 'styleBefore', 'styleSeparator', 'styleQuote');
-			
-			if (_.isUndefined(pos))
-				pos = list.length;
-			
-			
-			/** @type XMLEditAttribute */
-			var donor = list[pos];
-			if (donor) {
-				start = donor.fullRange().start;
-			} else if (donor = list[pos - 1]) {
-				start = donor.range().end;
-			}
-			
-			if (donor) {
-				styles = _.pick(donor, 'styleBefore', 'styleSeparator', 'styleQuote');
-			}
-			
-			value = styles.styleQuote + value + styles.styleQuote;
-			
-			var attribute = new XMLEditElement(this, 
-					editTree.createToken(start + styles.styleBefore.length, name),
-					editTree.createToken(start + styles.styleBefore.length + name.length 
-							+ styles.styleSeparator.length, value)
-					);
-			
-			_.extend(attribute, styles);
-			
-			// write new attribute into the source
-			this._updateSource(attribute.styleBefore + attribute.toString(), start);
+		extractFromAbbreviation: function(abbr) {
+			var filters = '';
+			abbr = abbr.replace(/\|([\w\|\-]+)$/, function(str, p1){
+				filters = p1;
+				return '';
+			});
 			
-			// insert new attribute
-			this._children.splice(pos, 0, attribute);
-			return attribute;
+			return [abbr, list(filters)];
 		}
-	});
+	};
+});/**
+ * Module that contains factories for element types used by Emmet
+ * @param {Function} require
+ * @param {Underscore} _
+ */
+emmet.define('elements', function(require, _) {
+	var factories = {};
+	var reAttrs = /([\w\-]+)\s*=\s*(['"])(.*?)\2/g;
 	
-	var XMLEditElement = require('editTree').EditElement.extend({
-		initialize: function(parent, nameToken, valueToken) {
-			this.styleBefore = parent.options.styleBefore;
-			this.styleSeparator = parent.options.styleSeparator;
-			
-			var value = '', quote = parent.options.styleQuote;
-			if (valueToken) {
-				value = valueToken.value;
-				quote = value.charAt(0);
-				if (quote == '"' || quote == "'") {
-					value = value.substring(1);
-				} else {
-					quote = '';
-				}
-				
-				if (quote && value.charAt(value.length - 1) == quote) {
-					value = value.substring(0, value.length - 1);
-				}
-			}
-			
-			this.styleQuote = quote;
-			
-			this._value = value;
-			this._positions.value = valueToken ? valueToken.start + quote.length : -1;
-		},
-		
+	var result = {
 		/**
-		 * Returns full rule range, with indentation
-		 * @param {Boolean} isAbsolute Return absolute range (with respect of
-		 * rule offset)
-		 * @returns {Range}
+		 * Create new element factory
+		 * @param {String} name Element identifier
+		 * @param {Function} factory Function that produces element of specified 
+		 * type. The object generated by this factory is automatically 
+		 * augmented with <code>type</code> property pointing to element
+		 * <code>name</code>
+		 * @memberOf elements
 		 */
-		fullRange: function(isAbsolute) {
-			var r = this.range(isAbsolute);
-			r.start -= this.styleBefore.length;
-			return r;
+		add: function(name, factory) {
+			var that = this;
+			factories[name] = function() {
+				var elem = factory.apply(that, arguments);
+				if (elem)
+					elem.type = name;
+				
+				return elem;
+			};
 		},
 		
-		toString: function() {
-			return this.name() + this.styleSeparator
-				+ this.styleQuote + this.value() + this.styleQuote;
-		}
-	});
-	
-	return {
 		/**
-		 * Parses HTML element into editable tree
-		 * @param {String} source
-		 * @param {Object} options
-		 * @memberOf emmet.htmlEditTree
-		 * @returns {EditContainer}
+		 * Returns factory for specified name
+		 * @param {String} name
+		 * @returns {Function}
 		 */
-		parse: function(source, options) {
-			return new XMLEditContainer(source, options);
+		get: function(name) {
+			return factories[name];
 		},
 		
 		/**
-		 * Extract and parse HTML from specified position in <code>content</code> 
-		 * @param {String} content CSS source code
-		 * @param {Number} pos Character position where to start source code extraction
-		 * @returns {XMLEditElement}
+		 * Creates new element with specified type
+		 * @param {String} name
+		 * @returns {Object}
 		 */
-		parseFromPosition: function(content, pos, isBackward) {
-			var bounds = this.extractTag(content, pos, isBackward);
-			if (!bounds || !bounds.inside(pos))
-				// no matching HTML tag or caret outside tag bounds
-				return null;
-			
-			return this.parse(bounds.substring(content), {
-				offset: bounds.start
-			});
+		create: function(name) {
+			var args = [].slice.call(arguments, 1);
+			var factory = this.get(name);
+			return factory ? factory.apply(this, args) : null;
 		},
 		
 		/**
-		 * Extracts nearest HTML tag range from <code>content</code>, starting at 
-		 * <code>pos</code> position
-		 * @param {String} content
-		 * @param {Number} pos
-		 * @param {Boolean} isBackward
-		 * @returns {Range}
+		 * Check if passed element is of specified type
+		 * @param {Object} elem
+		 * @param {String} type
+		 * @returns {Boolean}
 		 */
-		extractTag: function(content, pos, isBackward) {
-			var len = content.length, i;
-			var range = require('range');
-			
-			// max extraction length. I don't think there may be tags larger 
-			// than 2000 characters length
-			var maxLen = Math.min(2000, len);
-			
-			/** @type Range */
-			var r = null;
-			
-			var match = function(pos) {
+		is: function(elem, type) {
+			return elem && elem.type === type;
+		}
+	};
+	
+	// register resource references
+	function commonFactory(value) {
+		return {data: value};
+	}
+	
+	/**
+	 * Element factory
+	 * @param {String} elementName Name of output element
+	 * @param {String} attrs Attributes definition. You may also pass
+	 * <code>Array</code> where each contains object with <code>name</code> 
+	 * and <code>value</code> properties, or <code>Object</code>
+	 * @param {Boolean} isEmpty Is expanded element should be empty
+	 */
+	result.add('element', function(elementName, attrs, isEmpty) {
+		var ret = {
+			/** @memberOf __emmetDataElement */
+			name: elementName,
+			is_empty: !!isEmpty
+		};
+		
+		if (attrs) {
+			ret.attributes = [];
+			if (_.isArray(attrs)) {
+				ret.attributes = attrs;
+			} else if (_.isString(attrs)) {
 				var m;
-				if (content.charAt(pos) == '<' && (m = content.substr(pos, maxLen).match(startTag)))
-					return range.create(pos, m[0]);
-			};
-			
-			// lookup backward, in case we are inside tag already
-			for (i = pos; i >= 0; i--) {
-				if (r = match(i)) break;
-			}
-			
-			if (r && (r.inside(pos) || isBackward))
-				return r;
-			
-			if (!r && isBackward)
-				return null;
-			
-			// search forward
-			for (i = pos; i < len; i++) {
-				if (r = match(i))
-					return r;
+				while (m = reAttrs.exec(attrs)) {
+					ret.attributes.push({
+						name: m[1],
+						value: m[3]
+					});
+				}
+			} else {
+				_.each(attrs, function(value, name) {
+					ret.attributes.push({
+						name: name, 
+						value: value
+					});
+				});
 			}
 		}
-	};
+		
+		return ret;
+	});
+	
+	result.add('snippet', commonFactory);
+	result.add('reference', commonFactory);
+	result.add('empty', function() {
+		return {};
+	});
+	
+	return result;
 });/**
  * 'Expand abbreviation' editor action: extracts abbreviation from current caret 
  * position and replaces it with formatted output. 
@@ -7808,15 +6054,16 @@ emmet.define('expandAbbreviation', function(require, _) {
 		findAbbreviation: function(editor) {
 			/** @type Range */
 			var range = require('range').create(editor.getSelectionRange());
-			var content = String(editor.getContent());
+			var editorUtils = require('editorUtils');
 			if (range.length()) {
 				// abbreviation is selected by user
-				return range.substring(content);
+				return editorUtils.getContentRange(editor, range.start, range.end);
 			}
 			
 			// search for new abbreviation from current caret position
 			var curLine = editor.getCurrentLineRange();
-			return require('actionUtils').extractAbbreviation(content.substring(curLine.start, range.start));
+			return require('actionUtils').extractAbbreviation(
+					editorUtils.getContentRange(editor, curLine.start, range.start));
 		}
 	};
 });/**
@@ -7838,7 +6085,6 @@ emmet.define('wrapWithAbbreviation', function(require, _) {
 		var utils = require('utils');
 		/** @type emmet.editorUtils */
 		var editorUtils = require('editorUtils');
-		var matcher = require('html_matcher');
 		
 		abbr = abbr || editor.prompt("Enter abbreviation");
 		
@@ -7853,18 +6099,18 @@ emmet.define('wrapWithAbbreviation', function(require, _) {
 		
 		if (startOffset == endOffset) {
 			// no selection, find tag pair
-			range = matcher(info.content, startOffset, info.profile);
+			range = editorUtils.matchPair(editor, startOffset, info.profile);
 			
 			if (!range || range[0] == -1) // nothing to wrap
 				return false;
 			
 			/** @type Range */
-			var narrowedSel = utils.narrowToNonSpace(info.content, range[0], range[1] - range[0]);
+			var narrowedSel = utils.narrowToNonSpace(editorUtils.contentView(editor), range[0], range[1] - range[0]);
 			startOffset = narrowedSel.start;
 			endOffset = narrowedSel.end;
 		}
 		
-		var newContent = utils.escapeText(info.content.substring(startOffset, endOffset));
+		var newContent = utils.escapeText(editorUtils.getContentRange(editor, startOffset, endOffset));
 		var result = require('wrapWithAbbreviation').wrap(abbr, editorUtils.unindent(editor, newContent), info.syntax, info.profile);
 		
 		if (result) {
@@ -7935,7 +6181,7 @@ emmet.exec(function(require, _) {
 			
 		if (!range.length()) {
 			// no selection, find matching tag
-			var pair = require('html_matcher').getTags(info.content, editor.getCaretPos(), info.profile);
+			var pair = require('editorUtils').findTags(editor, editor.getCaretPos(), info.profile);
 			if (pair && pair[0]) { // found pair
 				range.start = pair[0].start;
 				range.end = pair[1] ? pair[1].end : pair[0].end;
@@ -8010,28 +6256,17 @@ emmet.exec(function(require, _) {
 	function searchComment(text, from, startToken, endToken) {
 		var commentStart = -1;
 		var commentEnd = -1;
-		
-		var hasMatch = function(str, start) {
-			return text.substr(start, str.length) == str;
-		};
 			
 		// search for comment start
-		while (from--) {
-			if (hasMatch(startToken, from)) {
-				commentStart = from;
-				break;
-			}
+		if (from > 0) {
+			commentStart = text.lastIndexOf(startToken, from - 1);
 		}
 		
 		if (commentStart != -1) {
 			// search for comment end
-			from = commentStart;
-			var contentLen = text.length;
-			while (contentLen >= from++) {
-				if (hasMatch(endToken, from)) {
-					commentEnd = from + endToken.length;
-					break;
-				}
+			commentEnd = text.indexOf(endToken, commentStart + 1);
+			if (commentEnd != -1) {
+				commentEnd += endToken.length;
 			}
 		}
 		
@@ -8040,6 +6275,39 @@ emmet.exec(function(require, _) {
 			: null;
 	}
 
+	/**
+	 * Search for nearest comment before <code>caretPos</code>, like 
+	 * <code>searchComment()</code> does, in a window of editor content 
+	 * that is enlarged until result is known
+	 * @param {IEmmetEditor} editor
+	 * @param {Number} caretPos Search start index
+	 * @param {Range} range Range that should be checked for comment overlap
+	 * @param {String} startToken Comment start string
+	 * @param {String} endToken Comment end string
+	 * @return {Range} Returns null if comment wasn't found
+	 */
+	function findComment(editor, caretPos, range, startToken, endToken) {
+		var win = require('editorUtils').contentWindow(editor, caretPos);
+		var limit = Math.min(range.start, caretPos);
+		
+		do {
+			var from = caretPos - win.start;
+			var comment = searchComment(win.content, from, startToken, endToken);
+			if (comment)
+				return comment.shift(win.start);
+			
+			// if there's no comment start in window but there's a comment 
+			// end before range, nearest comment that starts outside of 
+			// window ends before range too
+			if (from > 0 && win.content.lastIndexOf(startToken, from - 1) == -1
+					&& limit - win.start >= endToken.length 
+					&& win.content.lastIndexOf(endToken, limit - win.start - endToken.length) != -1)
+				return null;
+		} while (win.grow());
+		
+		return null;
+	}
+
 	/**
 	 * Generic comment toggling routine
 	 * @param {IEmmetEditor} editor
@@ -8050,7 +6318,6 @@ emmet.exec(function(require, _) {
 	 */
 	function genericCommentToggle(editor, commentStart, commentEnd, range) {
 		var editorUtils = require('editorUtils');
-		var content = editorUtils.outputInfo(editor).content;
 		var caretPos = editor.getCaretPos();
 		var newContent = null;
 		
@@ -8071,16 +6338,16 @@ emmet.exec(function(require, _) {
 		
 		// first, we need to make sure that this substring is not inside 
 		// comment
-		var commentRange = searchComment(content, caretPos, commentStart, commentEnd);
+		var commentRange = findComment(editor, caretPos, range, commentStart, commentEnd);
 		if (commentRange && commentRange.overlap(range)) {
 			// we're inside comment, remove it
 			range = commentRange;
-			newContent = removeComment(range.substring(content));
+			newContent = removeComment(editorUtils.getContentRange(editor, range.start, range.end));
 		} else {
 			// should add comment
 			// make sure that there's no comment inside selection
 			newContent = commentStart + ' ' +
-				range.substring(content)
+				editorUtils.getContentRange(editor, range.start, range.end)
 					.replace(new RegExp(utils.escapeForRegexp(commentStart) + '\\s*|\\s*' + utils.escapeForRegexp(commentEnd), 'g'), '') +
 				' ' + commentEnd;
 				
@@ -8110,7 +6377,7 @@ emmet.exec(function(require, _) {
 			// current token, we have to make sure that cursor is not inside
 			// 'style' attribute of html element
 			var caretPos = editor.getCaretPos();
-			var pair = require('html_matcher').getTags(info.content, caretPos);
+			var pair = require('editorUtils').findTags(editor, caretPos);
 			if (pair && pair[0] && pair[0].type == 'tag' && 
 					pair[0].start <= caretPos && pair[0].end >= caretPos) {
 				info.syntax = 'html';
@@ -8144,7 +6411,7 @@ emmet.exec(function(require, _) {
 		offset = offset || 0;
 		
 		var curPoint = editor.getCaretPos() + offset;
-		var content = String(editor.getContent());
+		var content = require('editorUtils').contentView(editor);
 		var maxLen = content.length;
 		var nextPoint = -1;
 		var reEmptyLine = /^\s+$/;
@@ -8702,6 +6969,82 @@ emmet.exec(function(require, _) {
 	/** @type emmet.actions */
 	var actions = require('actions');
 	var matcher = require('html_matcher');
+	/** @type emmet.editorUtils */
+	var editorUtils = require('editorUtils');
+	
+	/**
+	 * Chain of tag pairs selected by successive outward moves, from 
+	 * innermost to outermost. Chain is valid while document modification 
+	 * stamp is unchanged, so repeated outward and inward moves just step 
+	 * through it instead of searching for tags again
+	 */
+	var chain = {
+		/** @memberOf chain */
+		key: null,
+		items: [],
+		/** Index of currently selected item */
+		pos: -1,
+		
+		/**
+		 * Returns index of chain item that matches editor selection or -1.
+		 * Chain is dropped if document or editor was changed; editors
+		 * without modification stamp or file path don't keep a chain
+		 */
+		lookup: function(editor, syntax, selRange) {
+			var key = null;
+			if (editor.getModificationStamp) {
+				var stamp = editor.getModificationStamp();
+				var filePath = stamp != -1 ? editor.getFilePath() : null;
+				if (filePath != null)
+					key = [String(filePath), stamp, syntax].join('|');
+			}
+			
+			if (key === null || key !== this.key) {
+				this.key = key;
+				this.items = [];
+				this.pos = -1;
+			}
+			
+			var item = this.items[this.pos];
+			return item && item.start == selRange.start && item.end == selRange.end ? this.pos : -1;
+		},
+		
+		/**
+		 * Saves tag pair matched at <code>ix</code> position as parent of
+		 * item at <code>pos</code> index
+		 */
+		add: function(pos, ix, tagRange) {
+			if (this.key === null)
+				return;
+			
+			if (pos == -1 || pos != this.items.length - 1)
+				this.items = [];
+			
+			var last = _.last(this.items);
+			if (!last || last.start != tagRange.start || last.end != tagRange.end) {
+				this.items.push({
+					start: tagRange.start,
+					end: tagRange.end,
+					ix: ix,
+					opening_tag: matcher.last_match.opening_tag,
+					closing_tag: matcher.last_match.closing_tag
+				});
+			}
+			
+			this.pos = this.items.length - 1;
+		},
+		
+		/**
+		 * Selects chain item at <code>pos</code> index
+		 */
+		select: function(editor, pos) {
+			var item = this.items[pos];
+			this.pos = pos;
+			matcher.saveMatch(item.opening_tag, item.closing_tag, item.ix);
+			editor.createSelection(item.start, item.end);
+			return true;
+		}
+	};
 	
 	/**
 	 * Find and select HTML tag pair
@@ -8711,18 +7054,24 @@ emmet.exec(function(require, _) {
 	 */
 	function matchPair(editor, direction, syntax) {
 		direction = String((direction || 'out').toLowerCase());
-		var info = require('editorUtils').outputInfo(editor, syntax);
+		var info = editorUtils.outputInfo(editor, syntax);
 		syntax = info.syntax;
 		
 		var range = require('range');
 		/** @type Range */
 		var selRange = range.create(editor.getSelectionRange());
-		var content = info.content;
+		var content = editorUtils.contentView(editor);
 		/** @type Range */
 		var tagRange = null;
 		/** @type Range */
 		var _r;
 		
+		var chainPos = chain.lookup(editor, syntax, selRange);
+		if (direction == 'in' && chainPos > 0)
+			return chain.select(editor, chainPos - 1);
+		if (direction != 'in' && chainPos != -1 && chainPos < chain.items.length - 1)
+			return chain.select(editor, chainPos + 1);
+		
 		var oldOpenTag = matcher.last_match['opening_tag'];
 		var oldCloseTag = matcher.last_match['closing_tag'];
 			
@@ -8734,9 +7083,9 @@ emmet.exec(function(require, _) {
 			} else if (oldOpenTag.start == selRange.start) {
 				if (content.charAt(oldOpenTag.end) == '<') {
 //					test if the first inward tag matches the entire parent tag's content
-					_r = range.create(matcher.find(content, oldOpenTag.end + 1, syntax));
+					_r = range.create(editorUtils.findPair(editor, oldOpenTag.end + 1, syntax));
 					if (_r.start == oldOpenTag.end && _r.end == oldCloseTag.start) {
-						tagRange = range.create(matcher(content, oldOpenTag.end + 1, syntax));
+						tagRange = range.create(editorUtils.matchPair(editor, oldOpenTag.end + 1, syntax));
 					} else {
 						tagRange = range.create(oldOpenTag.end, oldCloseTag.start - oldOpenTag.end);
 					}
@@ -8744,12 +7093,14 @@ emmet.exec(function(require, _) {
 					tagRange = range.create(oldOpenTag.end, oldCloseTag.start - oldOpenTag.end);
 				}
 			} else {
-				var newCursor = content.substring(0, oldCloseTag.start).indexOf('<', oldOpenTag.end);
-				var searchPos = newCursor != -1 ? newCursor + 1 : oldOpenTag.end;
-				tagRange = range.create(matcher(content, searchPos, syntax));
+				var newCursor = editorUtils.getContentRange(editor, oldOpenTag.end, oldCloseTag.start).indexOf('<');
+				var searchPos = newCursor != -1 ? oldOpenTag.end + newCursor + 1 : oldOpenTag.end;
+				tagRange = range.create(editorUtils.matchPair(editor, searchPos, syntax));
 			}
 		} else {
-			tagRange = range.create(matcher(content, selRange.end, syntax));
+			tagRange = range.create(editorUtils.matchPair(editor, selRange.end, syntax));
+			if (tagRange && tagRange.start != -1)
+				chain.add(chainPos, selRange.end, tagRange);
 		}
 		
 		if (tagRange && tagRange.start != -1) {
@@ -8774,14 +7125,14 @@ emmet.exec(function(require, _) {
 	 * @param {IEmmetEditor} editor
 	 */
 	actions.add('matching_pair', function(editor) {
-		var content = String(editor.getContent());
+		var content = editorUtils.contentView(editor);
 		var caretPos = editor.getCaretPos();
 		
 		if (content.charAt(caretPos) == '<') 
 			// looks like caret is outside of tag pair  
 			caretPos++;
 			
-		var tags = matcher.getTags(content, caretPos, String(editor.getProfileName()));
+		var tags = editorUtils.findTags(editor, caretPos, String(editor.getProfileName()));
 			
 		if (tags && tags[0]) {
 			// match found
@@ -8810,10 +7161,11 @@ emmet.exec(function(require, _) {
 emmet.exec(function(require, _) {
 	require('actions').add('remove_tag', function(editor) {
 		var utils = require('utils');
-		var info = require('editorUtils').outputInfo(editor);
+		var editorUtils = require('editorUtils');
+		var info = editorUtils.outputInfo(editor);
 		
 		// search for tag
-		var pair = require('html_matcher').getTags(info.content, editor.getCaretPos(), info.profile);
+		var pair = editorUtils.findTags(editor, editor.getCaretPos(), info.profile);
 		if (pair && pair[0]) {
 			if (!pair[1]) {
 				// simply remove unary tag
@@ -8821,11 +7173,12 @@ emmet.exec(function(require, _) {
 			} else {
 				// remove tag and its newlines
 				/** @type Range */
-				var tagContentRange = utils.narrowToNonSpace(info.content, pair[0].end, pair[1].start - pair[0].end);
+				var content = editorUtils.contentView(editor);
+				var tagContentRange = utils.narrowToNonSpace(content, pair[0].end, pair[1].start - pair[0].end);
 				/** @type Range */
-				var startLineBounds = utils.findNewlineBounds(info.content, tagContentRange.start);
-				var startLinePad = utils.getLinePadding(startLineBounds.substring(info.content));
-				var tagContent = tagContentRange.substring(info.content);
+				var startLineBounds = utils.findNewlineBounds(content, tagContentRange.start);
+				var startLinePad = utils.getLinePadding(startLineBounds.substring(content));
+				var tagContent = tagContentRange.substring(content);
 				
 				tagContent = utils.unindentString(tagContent, startLinePad);
 				editor.replaceContent(utils.getCaretPlaceholder() + utils.escapeText(tagContent), pair[0].start, pair[1].end);
@@ -8888,13 +7241,13 @@ emmet.exec(function(require, _) {
 	}
 	
 	require('actions').add('split_join_tag', function(editor, profileName) {
-		var matcher = require('html_matcher');
+		var editorUtils = require('editorUtils');
 		
-		var info = require('editorUtils').outputInfo(editor, null, profileName);
+		var info = editorUtils.outputInfo(editor, null, profileName);
 		var profile = require('profile').get(info.profile);
 		
 		// find tag at current position
-		var pair = matcher.getTags(info.content, editor.getCaretPos(), info.profile);
+		var pair = editorUtils.findTags(editor, editor.getCaretPos(), info.profile);
 		if (pair && pair[0]) {
 			if (pair[1]) { // join tag
 				return joinTag(editor, profile, pair);
@@ -9059,7 +7412,6 @@ emmet.exec(function(require, _) {
 		var actionUtils = require('actionUtils');
 		var utils = require('utils');
 		
-		var content = String(editor.getContent());
 		var chars = '.+-*/\\';
 		
 		/** @type Range */
@@ -9071,7 +7423,7 @@ emmet.exec(function(require, _) {
 		}
 		
 		if (sel && sel.length()) {
-			var expr = sel.substring(content);
+			var expr = require('editorUtils').getContentRange(editor, sel.start, sel.end);
 			
 			// replace integral division: 11\2 => Math.round(11/2) 
 			expr = expr.replace(/([\d\.\-]+)\\([\d\.\-]+)/g, 'Math.round($1/$2)');
@@ -9123,7 +7475,7 @@ emmet.exec(function(require, _) {
 		});
 			
 		if (r && r.length()) {
-			var strNum = r.substring(String(editor.getContent()));
+			var strNum = require('editorUtils').getContentRange(editor, r.start, r.end);
 			var num = parseFloat(strNum);
 			if (!_.isNaN(num)) {
 				num = utils.prettifyNumber(num + step);
@@ -9202,22 +7554,26 @@ emmet.exec(function(require, _) {
 		/** @type emmet.resources */
 		var res = require('resources');
 		
-		var info = require('editorUtils').outputInfo(editor);
+		var editorUtils = require('editorUtils');
+		var info = editorUtils.outputInfo(editor);
 		var caretPos = editor.getCaretPos();
 		var nl = utils.getNewline();
+		var content = editorUtils.contentView(editor);
 		
 		if (_.include(['html', 'xml', 'xsl'], info.syntax)) {
 			var pad = res.getVariable('indentation');
-			// let's see if we're breaking newly created tag
-			var pair = require('html_matcher').getTags(info.content, caretPos, info.profile);
+			// let's see if we're breaking newly created tag: caret should 
+			// be between opening and closing tags
+			if (content.charAt(caretPos - 1) != '>' || content.substr(caretPos, 2) != '</')
+				return false;
+			
+			var pair = editorUtils.findTags(editor, caretPos, info.profile);
 			
 			if (pair[0] && pair[1] && pair[0].type == 'tag' && pair[0].end == caretPos && pair[1].start == caretPos) {
 				editor.replaceContent(nl + pad + utils.getCaretPlaceholder() + nl, caretPos);
 				return true;
 			}
 		} else if (info.syntax == 'css') {
-			/** @type String */
-			var content = info.content;
 			if (caretPos && content.charAt(caretPos - 1) == '{') {
 				var append = prefs.get('css.closeBraceIndentation');
 				var pad = res.getVariable('indentation');
@@ -9268,7 +7624,7 @@ emmet.exec(function(require, _) {
 			var utils = require('utils');
 			
 			var curPadding = require('editorUtils').getCurrentLinePadding(editor);
-			var content = String(editor.getContent());
+			var content = require('editorUtils').contentView(editor);
 			var caretPos = editor.getCaretPos();
 			var len = content.length;
 			var nl = utils.getNewline();
@@ -9300,7 +7656,6 @@ emmet.exec(function(require, _) {
  */
 emmet.exec(function(require, _) {
 	require('actions').add('merge_lines', function(editor) {
-		var matcher = require('html_matcher');
 		var utils = require('utils');
 		var editorUtils = require('editorUtils');
 		var info = editorUtils.outputInfo(editor);
@@ -9309,7 +7664,7 @@ emmet.exec(function(require, _) {
 		var selection = require('range').create(editor.getSelectionRange());
 		if (!selection.length()) {
 			// find matching tag
-			var pair = matcher(info.content, editor.getCaretPos(), info.profile);
+			var pair = editorUtils.matchPair(editor, editor.getCaretPos(), info.profile);
 			if (pair) {
 				selection.start = pair[0];
 				selection.end = pair[1];
@@ -9318,7 +7673,7 @@ emmet.exec(function(require, _) {
 		
 		if (selection.length()) {
 			// got range, merge lines
-			var text =  selection.substring(info.content);
+			var text = editorUtils.getContentRange(editor, selection.start, selection.end);
 			var lines = utils.splitByLines(text);
 			
 			for (var i = 1; i < lines.length; i++) {
@@ -9351,7 +7706,7 @@ emmet.exec(function(require, _) {
 			
 		if (!data) {
 			// no selection, try to find image bounds from current caret position
-			var text = String(editor.getContent()),  m;
+			var text = require('editorUtils').contentView(editor),  m;
 			while (caretPos-- >= 0) {
 				if (startsWith('src=', text, caretPos)) { // found <img src="">
 					if (m = text.substr(caretPos).match(/^(src=(["'])?)([^'"<>\s]+)\1?/)) {
@@ -9890,7 +8245,7 @@ emmet.define('cssResolver', function(require, _) {
 			if (content) {
 				var replaceFrom = caretPos - abbr.length;
 				var replaceTo = caretPos;
-				if (editor.getContent().charAt(caretPos) == ';') {
+				if (require('editorUtils').contentView(editor).charAt(caretPos) == ';') {
 					replaceTo++;
 				}
 				
@@ -10696,7 +9051,30 @@ emmet.exec(function(require, _) {
 	var generators = require('handlerList').create();
 	var resources = require('resources');
 	
+	/** Number of abbreviation nodes resolved by generators */
+	var generatedCount = 0;
+	
 	_.extend(resources, {
+		/**
+		 * Returns number of abbreviation nodes resolved by generators so 
+		 * far. Generated content may be different on each call (e.g. 
+		 * <i>lorem</i>), so expansion that used generators shouldn't be 
+		 * cached
+		 * @returns {Number}
+		 */
+		generatedCount: function() {
+			return generatedCount;
+		},
+		
+		/**
+		 * Marks abbreviation node as resolved with generated content. 
+		 * Should be called by preprocessors that produce content 
+		 * different on each call
+		 */
+		markGenerated: function() {
+			generatedCount++;
+		},
+		
 		/**
 		 * Add generator. A generator function <code>fn</code> will be called 
 		 * only if current abbreviation matches <code>regexp</code> regular 
@@ -10723,7 +9101,12 @@ emmet.exec(function(require, _) {
 	});
 	
 	resources.addResolver(function(node, syntax) {
-		return generators.exec(null, _.toArray(arguments));
+		var result = generators.exec(null, _.toArray(arguments));
+		if (result) {
+			generatedCount++;
+		}
+		
+		return result;
 	});
 });/**
  * Module for resolving tag names: returns best matched tag name for child
@@ -11239,7 +9622,8 @@ emmet.exec(function(require, _) {
  * Filter for escaping unsafe XML characters: <, >, &
  * @author Sergey Chikuyonok (serge.che@gmail.com)
  * @link http://chikuyonok.ru
- */emmet.exec(function(require, _) {
+ */
+emmet.exec(function(require, _) {
 	var charMap = {
 		'<': '&lt;',
 		'>': '&gt;',
@@ -11662,7 +10046,8 @@ emmet.exec(function(require, _) {
 		
 		return tree;
 	});
-});/**
+});
+/**
  * Trim filter: removes characters at the beginning of the text
  * content that indicates lists: numbers, #, *, -, etc.
  * 
@@ -11698,7 +10083,8 @@ emmet.exec(function(require, _) {
 		var re = new RegExp(require('preferences').get('filter.trimRegexp'));
 		return process(tree, re);
 	});
-});/**
+});
+/**
  * Filter for trimming "select" attributes from some tags that contains
  * child elements
  * @author Sergey Chikuyonok (serge.che@gmail.com)
@@ -11708,7 +10094,8 @@ emmet.exec(function(require, _) {
  * @memberOf __xslFilterDefine
  * @param {Function} require
  * @param {Underscore} _
- */emmet.exec(function(require, _) {
+ */
+emmet.exec(function(require, _) {
 	var tags = {
 		'xsl:variable': 1,
 		'xsl:with-param': 1
@@ -11764,6 +10151,7 @@ emmet.exec(function(require, _) {
 		tree.findAll(function(node) {
 			if (node._name && (match = node._name.match(re))) {
 				var wordCound = match[1] || 30;
+				require('resources').markGenerated();
 				
 				// force node name resolving if node should be repeated
 				// or contains attributes. In this case, node should be outputtet
@@ -8,6 +8,75 @@ function require(name) {
 	return emmet.require(name);
 }
 
+/**
+ * Rarely used core modules are not included into main bundle and loaded
+ * on first <code>require()</code> call
+ */
+(function(global) {
+	emmet.setModuleLoader(function(name) {
+		Packages.io.emmet.Emmet.loadModule(String(name), global);
+	});
+})(this);
+
+/**
+ * Expansion results are cached in <code>javaExpansionCache</code> object
+ * provided by Java. Cache is invalidated when vocabulary or profiles are
+ * changed
+ */
+(function(global) {
+	var res = require('resources');
+	var profile = require('profile');
+	
+	var invalidate = function(fn, minArgs) {
+		return function() {
+			if (global.javaExpansionCache && arguments.length >= (minArgs || 0)) {
+				global.javaExpansionCache.invalidate();
+			}
+			return fn.apply(this, arguments);
+		};
+	};
+	
+	res.setVocabulary = invalidate(res.setVocabulary);
+	res.addResolver = invalidate(res.addResolver);
+	res.addGenerator = invalidate(res.addGenerator);
+	// single-argument call creates profile object without registering it
+	profile.create = invalidate(profile.create, 2);
+	profile.remove = invalidate(profile.remove);
+	
+	var contextKey = function(node) {
+		var key = [node.name];
+		_.each(node.attributes, function(attr) {
+			key.push(attr.name + '=' + attr.value);
+		});
+		return key.join(' ');
+	};
+	
+	var expand = emmet.expandAbbreviation;
+	emmet.expandAbbreviation = function(abbr, syntax, profile, contextNode) {
+		var cache = global.javaExpansionCache;
+		if (!cache || !abbr || (profile && !_.isString(profile)) 
+				|| (contextNode && !_.isString(contextNode.name))) {
+			return expand.apply(this, arguments);
+		}
+		
+		var key = [abbr, syntax || '', profile || '', 
+			contextNode ? contextKey(contextNode) : ''].join('\n');
+		var result = cache.get(key);
+		if (result !== null) {
+			return String(result);
+		}
+		
+		var version = cache.getVersion();
+		var generated = res.generatedCount();
+		result = expand.apply(this, arguments);
+		if (version == cache.getVersion() && generated == res.generatedCount()) {
+			cache.put(key, result);
+		}
+		
+		return result;
+	};
+})(this);
+
 /**
  * Runs Emmet action
  * @param {IEmmetEditor} editor
@@ -68,6 +137,11 @@ function previewWrapWithAbbreviation(editor, abbr) {
 }
 
 function strToJSON(data) {
+	if (!_.isString(data)) {
+		// already converted to JS object by Java side
+		return data;
+	}
+
 	try {
 		return (new Function('return ' + String(data)))();
 	} catch(e) {
@@ -82,8 +156,13 @@ function javaLoadSystemSnippets(data) {
 	}
 }
 
-function javaLoadUserData(payload) {
-	payload = strToJSON(payload);
+/**
+ * Converts user data collected by Java into structure accepted by 
+ * <code>bootstrap.loadUserData()</code>
+ * @param {Object} payload
+ * @return {Object}
+ */
+function prepareUserData(payload) {
 	var profileMap = {
 		'tagCase': 'tag_case',
 		'attrCase': 'attr_case',
@@ -143,19 +222,68 @@ function javaLoadUserData(payload) {
 		});
 	}
 
-	require('bootstrap').loadUserData(validPayload);
+	return validPayload;
 }
 
-function javaLoadExtensions(payload) {
-	require('bootstrap').loadExtensions(strToJSON(payload));
+function javaLoadUserData(payload) {
+	var data = prepareUserData(strToJSON(payload));
+	var bootstrap = require('bootstrap');
+	bootstrap.loadUserData(data);
+	if (data.variables) {
+		bootstrap.loadSnippets({variables: data.variables});
+	}
 }
 
-function javaExtractTabstops(text) {
-	return require('tabStops').extract(text, {
-		escape: function(ch) {
-			return ch;
+/**
+ * Applies changes of user data to loaded vocabulary. Payload has the same
+ * structure as in <code>javaLoadUserData()</code>, items with 
+ * <code>null</code> value are removed
+ * @param {Object} payload
+ */
+function javaUpdateUserData(payload) {
+	var delta = prepareUserData(strToJSON(payload));
+	var res = require('resources');
+	var voc = res.getVocabulary('user') || {};
+	
+	var update = function(target, items) {
+		_.each(items, function(value, name) {
+			if (value === null) {
+				delete target[name];
+			} else {
+				target[name] = value;
+			}
+		});
+	};
+	
+	var syntaxSection = function(syntax) {
+		if (!(syntax in voc)) {
+			voc[syntax] = {};
 		}
+		return voc[syntax];
+	};
+	
+	_.each(delta.snippets, function(types, syntax) {
+		var section = syntaxSection(syntax);
+		_.each(types, function(items, type) {
+			if (!section[type]) {
+				section[type] = {};
+			}
+			update(section[type], items);
+		});
 	});
+	
+	if (delta.variables) {
+		if (!voc.variables) {
+			voc.variables = {};
+		}
+		update(voc.variables, delta.variables);
+	}
+	
+	_.each(delta.syntaxProfiles, function(options, syntax) {
+		syntaxSection(syntax).profile = options;
+	});
+	
+	res.setVocabulary(voc, 'user');
 }
 
 function log(message) {
@@ -0,0 +1,245 @@
+/**
+ * XML EditTree is a module that can parse an XML/HTML element into a tree with 
+ * convenient methods for adding, modifying and removing attributes. These 
+ * changes can be written back to string with respect of code formatting.
+ * 
+ * @memberOf __xmlEditTreeDefine
+ * @constructor
+ * @param {Function} require
+ * @param {Underscore} _ 
+ */
+emmet.define('xmlEditTree', function(require, _) {
+	var defaultOptions = {
+		styleBefore: ' ',
+		styleSeparator: '=',
+		styleQuote: '"',
+		offset: 0
+	};
+	
+	var startTag = /^<([\w\:\-]+)((?:\s+[\w\-:]+(?:\s*=\s*(?:(?:"[^"]*")|(?:'[^']*')|[^>\s]+))?)*)\s*(\/?)>/m;
+	
+	var XMLEditContainer = require('editTree').EditContainer.extend({
+		initialize: function(source, options) {
+			_.defaults(this.options, defaultOptions);
+			this._positions.name = 1;
+			
+			var attrToken = null;
+			var tokens = require('xmlParser').parse(source);
+			var range = require('range');
+			
+			_.each(tokens, function(token) {
+				token.value = range.create(token).substring(source);
+				switch (token.type) {
+					case 'tag':
+						if (/^<[^\/]+/.test(token.value)) {
+							this._name = token.value.substring(1);
+						}
+						break;
+						
+					case 'attribute':
+						// add empty attribute
+						if (attrToken) {
+							this._children.push(new XMLEditElement(this, attrToken));
+						}
+						
+						attrToken = token;
+						break;
+						
+					case 'string':
+						this._children.push(new XMLEditElement(this, attrToken, token));
+						attrToken = null;
+						break;
+				}
+			}, this);
+			
+			if (attrToken) {
+				this._children.push(new XMLEditElement(this, attrToken));
+			}
+			
+			this._saveStyle();
+		},
+		
+		/**
+		 * Remembers all styles of properties
+		 * @private
+		 */
+		_saveStyle: function() {
+			var start = this.nameRange().end;
+			var source = this.source;
+			
+			_.each(this.list(), /** @param {EditElement} p */ function(p) {
+				p.styleBefore = source.substring(start, p.namePosition());
+				
+				if (p.valuePosition() !== -1) {
+					p.styleSeparator = source.substring(p.namePosition() + p.name().length, p.valuePosition() - p.styleQuote.length);
+				}
+				
+				start = p.range().end;
+			});
+		},
+		
+		/**
+		 * Adds new attribute 
+		 * @param {String} name Property name
+		 * @param {String} value Property value
+		 * @param {Number} pos Position at which to insert new property. By 
+		 * default the property is inserted at the end of rule 
+		 */
+		add: function(name, value, pos) {
+			var list = this.list();
+			var start = this.nameRange().end;
+			var editTree = require('editTree');
+			var styles = _.pick(this.options, 'styleBefore', 'styleSeparator', 'styleQuote');
+			
+			if (_.isUndefined(pos))
+				pos = list.length;
+			
+			
+			/** @type XMLEditAttribute */
+			var donor = list[pos];
+			if (donor) {
+				start = donor.fullRange().start;
+			} else if (donor = list[pos - 1]) {
+				start = donor.range().end;
+			}
+			
+			if (donor) {
+				styles = _.pick(donor, 'styleBefore', 'styleSeparator', 'styleQuote');
+			}
+			
+			value = styles.styleQuote + value + styles.styleQuote;
+			
+			var attribute = new XMLEditElement(this, 
+					editTree.createToken(start + styles.styleBefore.length, name),
+					editTree.createToken(start + styles.styleBefore.length + name.length 
+							+ styles.styleSeparator.length, value)
+					);
+			
+			_.extend(attribute, styles);
+			
+			// write new attribute into the source
+			this._updateSource(attribute.styleBefore + attribute.toString(), start);
+			
+			// insert new attribute
+			this._children.splice(pos, 0, attribute);
+			return attribute;
+		}
+	});
+	
+	var XMLEditElement = require('editTree').EditElement.extend({
+		initialize: function(parent, nameToken, valueToken) {
+			this.styleBefore = parent.options.styleBefore;
+			this.styleSeparator = parent.options.styleSeparator;
+			
+			var value = '', quote = parent.options.styleQuote;
+			if (valueToken) {
+				value = valueToken.value;
+				quote = value.charAt(0);
+				if (quote == '"' || quote == "'") {
+					value = value.substring(1);
+				} else {
+					quote = '';
+				}
+				
+				if (quote && value.charAt(value.length - 1) == quote) {
+					value = value.substring(0, value.length - 1);
+				}
+			}
+			
+			this.styleQuote = quote;
+			
+			this._value = value;
+			this._positions.value = valueToken ? valueToken.start + quote.length : -1;
+		},
+		
+		/**
+		 * Returns full rule range, with indentation
+		 * @param {Boolean} isAbsolute Return absolute range (with respect of
+		 * rule offset)
+		 * @returns {Range}
+		 */
+		fullRange: function(isAbsolute) {
+			var r = this.range(isAbsolute);
+			r.start -= this.styleBefore.length;
+			return r;
+		},
+		
+		toString: function() {
+			return this.name() + this.styleSeparator
+				+ this.styleQuote + this.value() + this.styleQuote;
+		}
+	});
+	
+	return {
+		/**
+		 * Parses HTML element into editable tree
+		 * @param {String} source
+		 * @param {Object} options
+		 * @memberOf emmet.htmlEditTree
+		 * @returns {EditContainer}
+		 */
+		parse: function(source, options) {
+			return new XMLEditContainer(source, options);
+		},
+		
+		/**
+		 * Extract and parse HTML from specified position in <code>content</code> 
+		 * @param {String} content CSS source code
+		 * @param {Number} pos Character position where to start source code extraction
+		 * @returns {XMLEditElement}
+		 */
+		parseFromPosition: function(content, pos, isBackward) {
+			var bounds = this.extractTag(content, pos, isBackward);
+			if (!bounds || !bounds.inside(pos))
+				// no matching HTML tag or caret outside tag bounds
+				return null;
+			
+			return this.parse(bounds.substring(content), {
+				offset: bounds.start
+			});
+		},
+		
+		/**
+		 * Extracts nearest HTML tag range from <code>content</code>, starting at 
+		 * <code>pos</code> position
+		 * @param {String} content
+		 * @param {Number} pos
+		 * @param {Boolean} isBackward
+		 * @returns {Range}
+		 */
+		extractTag: function(content, pos, isBackward) {
+			var len = content.length, i;
+			var range = require('range');
+			
+			// max extraction length. I don't think there may be tags larger 
+			// than 2000 characters length
+			var maxLen = Math.min(2000, len);
+			
+			/** @type Range */
+			var r = null;
+			
+			var match = function(pos) {
+				var m;
+				if (content.charAt(pos) == '<' && (m = content.substr(pos, maxLen).match(startTag)))
+					return range.create(pos, m[0]);
+			};
+			
+			// lookup backward, in case we are inside tag already
+			for (i = pos; i >= 0; i--) {
+				if (r = match(i)) break;
+			}
+			
+			if (r && (r.inside(pos) || isBackward))
+				return r;
+			
+			if (!r && isBackward)
+				return null;
+			
+			// search forward
+			for (i = pos; i < len; i++) {
+				if (r = match(i))
+					return r;
+			}
+		}
+	};
+});
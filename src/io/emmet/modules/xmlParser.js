@@ -0,0 +1,333 @@
+/**
+ * HTML tokenizer by Marijn Haverbeke
+ * http://codemirror.net/
+ * @constructor
+ * @memberOf __xmlParseDefine
+ * @param {Function} require
+ * @param {Underscore} _
+ */
+emmet.define('xmlParser', function(require, _) {
+	var Kludges = {
+		autoSelfClosers : {},
+		implicitlyClosed : {},
+		contextGrabbers : {},
+		doNotIndent : {},
+		allowUnquoted : true,
+		allowMissing : true
+	};
+
+	// Return variables for tokenizers
+	var tagName = null, type = null;
+
+	function inText(stream, state) {
+		function chain(parser) {
+			state.tokenize = parser;
+			return parser(stream, state);
+		}
+
+		var ch = stream.next();
+		if (ch == "<") {
+			if (stream.eat("!")) {
+				if (stream.eat("[")) {
+					if (stream.match("CDATA["))
+						return chain(inBlock("atom", "]]>"));
+					else
+						return null;
+				} else if (stream.match("--"))
+					return chain(inBlock("comment", "-->"));
+				else if (stream.match("DOCTYPE", true, true)) {
+					stream.eatWhile(/[\w\._\-]/);
+					return chain(doctype(1));
+				} else
+					return null;
+			} else if (stream.eat("?")) {
+				stream.eatWhile(/[\w\._\-]/);
+				state.tokenize = inBlock("meta", "?>");
+				return "meta";
+			} else {
+				type = stream.eat("/") ? "closeTag" : "openTag";
+				stream.eatSpace();
+				tagName = "";
+				var c;
+				while ((c = stream.eat(/[^\s\u00a0=<>\"\'\/?]/)))
+					tagName += c;
+				state.tokenize = inTag;
+				return "tag";
+			}
+		} else if (ch == "&") {
+			var ok;
+			if (stream.eat("#")) {
+				if (stream.eat("x")) {
+					ok = stream.eatWhile(/[a-fA-F\d]/) && stream.eat(";");
+				} else {
+					ok = stream.eatWhile(/[\d]/) && stream.eat(";");
+				}
+			} else {
+				ok = stream.eatWhile(/[\w\.\-:]/) && stream.eat(";");
+			}
+			return ok ? "atom" : "error";
+		} else {
+			stream.eatWhile(/[^&<]/);
+			return "text";
+		}
+	}
+
+	function inTag(stream, state) {
+		var ch = stream.next();
+		if (ch == ">" || (ch == "/" && stream.eat(">"))) {
+			state.tokenize = inText;
+			type = ch == ">" ? "endTag" : "selfcloseTag";
+			return "tag";
+		} else if (ch == "=") {
+			type = "equals";
+			return null;
+		} else if (/[\'\"]/.test(ch)) {
+			state.tokenize = inAttribute(ch);
+			return state.tokenize(stream, state);
+		} else {
+			stream.eatWhile(/[^\s\u00a0=<>\"\'\/?]/);
+			return "word";
+		}
+	}
+
+	function inAttribute(quote) {
+		return function(stream, state) {
+			while (!stream.eol()) {
+				if (stream.next() == quote) {
+					state.tokenize = inTag;
+					break;
+				}
+			}
+			return "string";
+		};
+	}
+
+	function inBlock(style, terminator) {
+		return function(stream, state) {
+			while (!stream.eol()) {
+				if (stream.match(terminator)) {
+					state.tokenize = inText;
+					break;
+				}
+				stream.next();
+			}
+			return style;
+		};
+	}
+	
+	function doctype(depth) {
+		return function(stream, state) {
+			var ch;
+			while ((ch = stream.next()) != null) {
+				if (ch == "<") {
+					state.tokenize = doctype(depth + 1);
+					return state.tokenize(stream, state);
+				} else if (ch == ">") {
+					if (depth == 1) {
+						state.tokenize = inText;
+						break;
+					} else {
+						state.tokenize = doctype(depth - 1);
+						return state.tokenize(stream, state);
+					}
+				}
+			}
+			return "meta";
+		};
+	}
+
+	var curState = null, setStyle;
+	function pass() {
+		for (var i = arguments.length - 1; i >= 0; i--)
+			curState.cc.push(arguments[i]);
+	}
+	
+	function cont() {
+		pass.apply(null, arguments);
+		return true;
+	}
+
+	function pushContext(tagName, startOfLine) {
+		var noIndent = Kludges.doNotIndent.hasOwnProperty(tagName) 
+			|| (curState.context && curState.context.noIndent);
+		curState.context = {
+			prev : curState.context,
+			tagName : tagName,
+			indent : curState.indented,
+			startOfLine : startOfLine,
+			noIndent : noIndent
+		};
+	}
+	
+	function popContext() {
+		if (curState.context)
+			curState.context = curState.context.prev;
+	}
+
+	function element(type) {
+		if (type == "openTag") {
+			curState.tagName = tagName;
+			return cont(attributes, endtag(curState.startOfLine));
+		} else if (type == "closeTag") {
+			var err = false;
+			if (curState.context) {
+				if (curState.context.tagName != tagName) {
+					if (Kludges.implicitlyClosed.hasOwnProperty(curState.context.tagName.toLowerCase())) {
+						popContext();
+					}
+					err = !curState.context || curState.context.tagName != tagName;
+				}
+			} else {
+				err = true;
+			}
+			
+			if (err)
+				setStyle = "error";
+			return cont(endclosetag(err));
+		}
+		return cont();
+	}
+	
+	function endtag(startOfLine) {
+		return function(type) {
+			if (type == "selfcloseTag"
+					|| (type == "endTag" && Kludges.autoSelfClosers
+							.hasOwnProperty(curState.tagName
+									.toLowerCase()))) {
+				maybePopContext(curState.tagName.toLowerCase());
+				return cont();
+			}
+			if (type == "endTag") {
+				maybePopContext(curState.tagName.toLowerCase());
+				pushContext(curState.tagName, startOfLine);
+				return cont();
+			}
+			return cont();
+		};
+	}
+	
+	function endclosetag(err) {
+		return function(type) {
+			if (err)
+				setStyle = "error";
+			if (type == "endTag") {
+				popContext();
+				return cont();
+			}
+			setStyle = "error";
+			return cont(arguments.callee);
+		};
+	}
+	
+	function maybePopContext(nextTagName) {
+		var parentTagName;
+		while (true) {
+			if (!curState.context) {
+				return;
+			}
+			parentTagName = curState.context.tagName.toLowerCase();
+			if (!Kludges.contextGrabbers.hasOwnProperty(parentTagName)
+					|| !Kludges.contextGrabbers[parentTagName].hasOwnProperty(nextTagName)) {
+				return;
+			}
+			popContext();
+		}
+	}
+
+	function attributes(type) {
+		if (type == "word") {
+			setStyle = "attribute";
+			return cont(attribute, attributes);
+		}
+		if (type == "endTag" || type == "selfcloseTag")
+			return pass();
+		setStyle = "error";
+		return cont(attributes);
+	}
+	
+	function attribute(type) {
+		if (type == "equals")
+			return cont(attvalue, attributes);
+		if (!Kludges.allowMissing)
+			setStyle = "error";
+		return (type == "endTag" || type == "selfcloseTag") ? pass()
+				: cont();
+	}
+	
+	function attvalue(type) {
+		if (type == "string")
+			return cont(attvaluemaybe);
+		if (type == "word" && Kludges.allowUnquoted) {
+			setStyle = "string";
+			return cont();
+		}
+		setStyle = "error";
+		return (type == "endTag" || type == "selfCloseTag") ? pass()
+				: cont();
+	}
+	
+	function attvaluemaybe(type) {
+		if (type == "string")
+			return cont(attvaluemaybe);
+		else
+			return pass();
+	}
+	
+	function startState() {
+		return {
+			tokenize : inText,
+			cc : [],
+			indented : 0,
+			startOfLine : true,
+			tagName : null,
+			context : null
+		};
+	}
+	
+	function token(stream, state) {
+		if (stream.sol()) {
+			state.startOfLine = true;
+			state.indented = 0;
+		}
+		
+		if (stream.eatSpace())
+			return null;
+
+		setStyle = type = tagName = null;
+		var style = state.tokenize(stream, state);
+		state.type = type;
+		if ((style || type) && style != "comment") {
+			curState = state;
+			while (true) {
+				var comb = state.cc.pop() || element;
+				if (comb(type || style))
+					break;
+			}
+		}
+		state.startOfLine = false;
+		return setStyle || style;
+	}
+
+	return {
+		/**
+		 * @memberOf emmet.xmlParser
+		 * @returns
+		 */
+		parse: function(data, offset) {
+			offset = offset || 0;
+			var state = startState();
+			var stream = require('stringStream').create(data);
+			var tokens = [];
+			while (!stream.eol()) {
+				tokens.push({
+					type: token(stream, state),
+					start: stream.start + offset,
+					end: stream.pos + offset
+				});
+				stream.start = stream.pos;
+			}
+			
+			return tokens;
+		}		
+	};
+});